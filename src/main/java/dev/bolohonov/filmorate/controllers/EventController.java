@@ -4,12 +4,15 @@ import dev.bolohonov.filmorate.model.Event;
 import dev.bolohonov.filmorate.service.EventService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.util.Collection;
+import java.util.List;
 
 @RestController
 @RequiredArgsConstructor
@@ -19,9 +22,22 @@ public class EventController {
 
     private final EventService eventService;
 
+    /**
+     * Лента всегда отдается страницами по убыванию id событий, по умолчанию {@value Pages#DEFAULT_LIMIT}.
+     * Для заполненной страницы id последнего события возвращается в {@value Pages#NEXT_CURSOR}
+     * и передается в before следующего запроса.
+     */
     @GetMapping("/{id}/feed")
-    public Collection<Event> getFeedForUser(@PathVariable("id") Integer id) {
-        log.info("Get feed for user with ID {}", id);
-        return eventService.getFeedForUser(id);
+    public ResponseEntity<List<Event>> getFeedForUser(@PathVariable("id") Integer id,
+                                                      @RequestParam(value = "before", required = false) Integer before,
+                                                      @RequestParam(value = "limit", required = false) Integer limit) {
+        int pageSize = Pages.limit(limit);
+        log.info("Get {} feed events before {} for user with ID {}", pageSize, before, id);
+        List<Event> page = eventService.getFeedPage(id, before == null ? Integer.MAX_VALUE : before, pageSize);
+        HttpHeaders headers = new HttpHeaders();
+        if (page.size() >= pageSize) {
+            headers.set(Pages.NEXT_CURSOR, String.valueOf(page.get(page.size() - 1).getId()));
+        }
+        return ResponseEntity.ok().headers(headers).body(page);
     }
 }
@@ -1,11 +1,17 @@
 package dev.bolohonov.filmorate.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import dev.bolohonov.filmorate.model.Film;
+import dev.bolohonov.filmorate.model.Suggestion;
 import dev.bolohonov.filmorate.service.FilmService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.server.ResponseStatusException;
 
 import javax.validation.Valid;
@@ -22,16 +28,28 @@ import static org.springframework.http.HttpStatus.OK;
 @Slf4j
 public class FilmController {
     private final FilmService filmService;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public FilmController(FilmService filmService) {
+    public FilmController(FilmService filmService, ObjectMapper objectMapper) {
         this.filmService = filmService;
+        this.objectMapper = objectMapper;
     }
 
-    @GetMapping
-    public Collection<Film> findAll() {
+    @GetMapping(produces = {MediaType.APPLICATION_JSON_VALUE, JsonStreams.NDJSON})
+    public ResponseEntity<StreamingResponseBody> findAll(
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestParam(value = "after", required = false) String after,
+            @RequestParam(value = "limit", required = false) Integer limit) {
+        if (Pages.requested(after, limit)) {
+            int pageSize = Pages.limit(limit);
+            log.info("Get page of {} films", pageSize);
+            List<Film> page = filmService.getFilmsPage(Pages.afterId(after), pageSize);
+            return JsonStreams.<Film>write(objectMapper, accept, Pages.headers(page, pageSize, Film::getId),
+                    page::forEach);
+        }
         log.info("Get all films");
-        return filmService.getFilms();
+        return JsonStreams.<Film>write(objectMapper, accept, filmService::streamFilms);
     }
 
     @GetMapping("/{filmId}")
@@ -82,6 +100,17 @@ public class FilmController {
         return filmService.getFilmsByLikes(count, genreId, year);
     }
 
+    @GetMapping("/{id}/similar")
+    public Collection<Film> getSimilarFilms(
+            @PathVariable("id") Integer id,
+            @RequestParam(value = "count", defaultValue = "10", required = false) Integer count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException();
+        }
+        log.info("Get {} films similar to film with ID {}", count, id);
+        return filmService.getSimilarFilms(id, count);
+    }
+
     @GetMapping("/director/{directorId}")
     @ResponseStatus(OK)
     public List<Film> getFilmsByDirectorSortedByLikeOrYear(@PathVariable Integer directorId,
@@ -102,6 +131,16 @@ public class FilmController {
         return filmService.search(query, by);
     }
 
+    @GetMapping("/search/suggest")
+    public Collection<Suggestion> suggest(@RequestParam(value = "prefix") String prefix,
+                                          @RequestParam(value = "count", defaultValue = "10") Integer count) {
+        if (prefix.isBlank() || count <= 0) {
+            throw new IllegalArgumentException();
+        }
+        log.info("Suggest films and directors by prefix {}", prefix);
+        return filmService.suggest(prefix, count);
+    }
+
     @GetMapping("/common") //common?userId={userId}&friendId={friendId}
     @ResponseStatus(OK)
     public List<Film> getCommonFilms (@RequestParam Integer userId,
@@ -0,0 +1,68 @@
+package dev.bolohonov.filmorate.controllers;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+/**
+ * Потоковая выдача коллекций: элементы пишутся в ответ по мере чтения из базы, без сборки списка.
+ * Формат выбирается по заголовку Accept: NDJSON для {@value #NDJSON}, иначе JSON-массив.
+ */
+final class JsonStreams {
+    static final String NDJSON = "application/x-ndjson";
+
+    private JsonStreams() {
+    }
+
+    static <T> ResponseEntity<StreamingResponseBody> write(ObjectMapper objectMapper, String accept,
+                                                           Consumer<Consumer<T>> source) {
+        return write(objectMapper, accept, new HttpHeaders(), source);
+    }
+
+    static <T> ResponseEntity<StreamingResponseBody> write(ObjectMapper objectMapper, String accept,
+                                                           HttpHeaders headers, Consumer<Consumer<T>> source) {
+        boolean ndjson = accept != null && accept.contains(NDJSON);
+        StreamingResponseBody body = output -> {
+            try (JsonGenerator generator = objectMapper.createGenerator(output)) {
+                if (ndjson) {
+                    generator.setRootValueSeparator(null);
+                    source.accept(item -> writeLine(generator, item));
+                } else {
+                    generator.writeStartArray();
+                    source.accept(item -> writeValue(generator, item));
+                    generator.writeEndArray();
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+        return ResponseEntity.ok()
+                .headers(headers)
+                .contentType(ndjson ? MediaType.parseMediaType(NDJSON) : MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+
+    private static void writeValue(JsonGenerator generator, Object item) {
+        try {
+            generator.writeObject(item);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeLine(JsonGenerator generator, Object item) {
+        try {
+            generator.writeObject(item);
+            generator.writeRaw('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
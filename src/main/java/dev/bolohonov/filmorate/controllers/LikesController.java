@@ -0,0 +1,30 @@
+package dev.bolohonov.filmorate.controllers;
+
+import dev.bolohonov.filmorate.model.BulkLikeReport;
+import dev.bolohonov.filmorate.service.LikesImportService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/likes")
+@Slf4j
+public class LikesController {
+
+    private final LikesImportService likesImportService;
+
+    @PostMapping("/bulk")
+    public BulkLikeReport importLikes(InputStream body,
+                                      @RequestParam(value = "events", defaultValue = "true") boolean events)
+            throws IOException {
+        log.info("Bulk import of likes, events {}", events);
+        return likesImportService.importLikes(body, events);
+    }
+}
@@ -0,0 +1,72 @@
+package dev.bolohonov.filmorate.controllers;
+
+import dev.bolohonov.filmorate.exceptions.ValidationException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * Курсорная пагинация списков: курсор кодирует id последнего элемента страницы,
+ * следующая страница читается запросом {@code id > ? order by id limit ?}.
+ * Курсор следующей страницы возвращается в заголовке {@value #NEXT_CURSOR}, если страница заполнена.
+ */
+final class Pages {
+    static final String NEXT_CURSOR = "X-Next-Cursor";
+    static final int DEFAULT_LIMIT = 100;
+    static final int MAX_LIMIT = 1000;
+
+    private static final String PREFIX = "id:";
+
+    private Pages() {
+    }
+
+    static boolean requested(String after, Integer limit) {
+        return after != null || limit != null;
+    }
+
+    static int afterId(String after) {
+        if (after == null || after.isEmpty()) {
+            return 0;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(after), StandardCharsets.UTF_8);
+            if (!decoded.startsWith(PREFIX)) {
+                throw new IllegalArgumentException(decoded);
+            }
+            return Integer.parseInt(decoded.substring(PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("Некорректный курсор страницы.");
+        }
+    }
+
+    static int limit(Integer limit) {
+        if (limit == null) {
+            return DEFAULT_LIMIT;
+        }
+        if (limit <= 0 || limit > MAX_LIMIT) {
+            throw new ValidationException(String.format("Размер страницы должен быть от 1 до %d.", MAX_LIMIT));
+        }
+        return limit;
+    }
+
+    static <T> ResponseEntity<List<T>> of(List<T> items, int limit, ToIntFunction<T> id) {
+        return ResponseEntity.ok().headers(headers(items, limit, id)).body(items);
+    }
+
+    static <T> HttpHeaders headers(List<T> items, int limit, ToIntFunction<T> id) {
+        HttpHeaders headers = new HttpHeaders();
+        if (items.size() >= limit) {
+            headers.set(NEXT_CURSOR, cursor(id.applyAsInt(items.get(items.size() - 1))));
+        }
+        return headers;
+    }
+
+    static String cursor(int id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((PREFIX + id).getBytes(StandardCharsets.UTF_8));
+    }
+}
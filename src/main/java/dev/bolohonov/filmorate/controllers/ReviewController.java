@@ -4,6 +4,7 @@ import dev.bolohonov.filmorate.exceptions.IncorrectParameterException;
 import dev.bolohonov.filmorate.model.Review;
 import dev.bolohonov.filmorate.service.ReviewService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import javax.validation.Valid;
@@ -41,15 +42,22 @@ public class ReviewController {
     }
 
     @GetMapping
-    public List<Review> getAllReviewsByFilmId(
+    public ResponseEntity<List<Review>> getAllReviewsByFilmId(
             @RequestParam(required = false) Integer filmId,
-            @RequestParam(defaultValue = "10", required = false) Integer count
+            @RequestParam(defaultValue = "10", required = false) Integer count,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit
     ) {
         if (filmId == null) {
             throw new IncorrectParameterException("Query param <film> incorrect");
         }
+        if (Pages.requested(after, limit)) {
+            int pageSize = Pages.limit(limit);
+            return Pages.of(reviewService.getReviewsPageByFilmId(filmId, Pages.afterId(after), pageSize), pageSize,
+                    Review::getId);
+        }
 
-        return reviewService.getAllReviewsByFilmId(filmId, count);
+        return ResponseEntity.ok(reviewService.getAllReviewsByFilmId(filmId, count));
     }
 
     @PutMapping("/{id}/like/{userId}")
@@ -1,15 +1,23 @@
 package dev.bolohonov.filmorate.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import dev.bolohonov.filmorate.model.Film;
+import dev.bolohonov.filmorate.model.FriendshipDistance;
+import dev.bolohonov.filmorate.model.RecallReport;
 import dev.bolohonov.filmorate.model.User;
 import dev.bolohonov.filmorate.service.UserService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Validated
@@ -18,16 +26,28 @@ import java.util.Optional;
 @Slf4j
 public class UserController {
     private final UserService userService;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public UserController(UserService userService) {
+    public UserController(UserService userService, ObjectMapper objectMapper) {
         this.userService = userService;
+        this.objectMapper = objectMapper;
     }
 
-    @GetMapping
-    public Collection<User> findAll() {
+    @GetMapping(produces = {MediaType.APPLICATION_JSON_VALUE, JsonStreams.NDJSON})
+    public ResponseEntity<StreamingResponseBody> findAll(
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestParam(value = "after", required = false) String after,
+            @RequestParam(value = "limit", required = false) Integer limit) {
+        if (Pages.requested(after, limit)) {
+            int pageSize = Pages.limit(limit);
+            log.info("Get page of {} users", pageSize);
+            List<User> page = userService.getUsersPage(Pages.afterId(after), pageSize);
+            return JsonStreams.<User>write(objectMapper, accept, Pages.headers(page, pageSize, User::getId),
+                    page::forEach);
+        }
         log.info("Get all users");
-        return userService.getUsers();
+        return JsonStreams.<User>write(objectMapper, accept, userService::streamUsers);
     }
 
     @GetMapping("/{userId}")
@@ -55,9 +75,18 @@ public class UserController {
     }
 
     @GetMapping("/{id}/friends")
-    public Collection<User> getUserFriends(@PathVariable("id") Integer id) {
+    public ResponseEntity<? extends Collection<User>> getUserFriends(
+            @PathVariable("id") Integer id,
+            @RequestParam(value = "after", required = false) String after,
+            @RequestParam(value = "limit", required = false) Integer limit) {
+        if (Pages.requested(after, limit)) {
+            int pageSize = Pages.limit(limit);
+            log.info("Get page of friends of user with ID {}", id);
+            return Pages.of(userService.getUserFriendsPage(id, Pages.afterId(after), pageSize), pageSize,
+                    User::getId);
+        }
         log.info("Get friends of user with ID {}", id);
-        return userService.getUserFriends(id);
+        return ResponseEntity.ok(userService.getUserFriends(id));
     }
 
     @GetMapping("/{id}/friends/common/{otherId}")
@@ -67,6 +96,24 @@ public class UserController {
         return userService.getMatchingFriends(id, otherId);
     }
 
+    @GetMapping("/{id}/friends/suggestions")
+    public List<User> getFriendSuggestions(
+            @PathVariable("id") Integer id,
+            @RequestParam(value = "count", defaultValue = "10", required = false) Integer count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException();
+        }
+        log.info("Get {} friend suggestions for user with ID {}", count, id);
+        return userService.getFriendSuggestions(id, count);
+    }
+
+    @GetMapping("/{id}/distance/{otherId}")
+    public FriendshipDistance getFriendshipDistance(@PathVariable("id") Integer id,
+                                                    @PathVariable("otherId") Integer otherId) {
+        log.info("Get friendship distance between users with ID {} and {}", id, otherId);
+        return userService.getFriendshipDistance(id, otherId);
+    }
+
     @PostMapping
     public User create(@Valid @RequestBody User user) {
         log.info("Add new user");
@@ -84,4 +131,14 @@ public class UserController {
         log.info("Add recommendations to user ID {}", userId);
         return userService.getRecommendations(userId);
     }
+
+    @GetMapping("/recommendations/recall")
+    public RecallReport measureRecommendationRecall(
+            @RequestParam(value = "sample", defaultValue = "100", required = false) Integer sample) {
+        if (sample <= 0) {
+            throw new IllegalArgumentException();
+        }
+        log.info("Measure recall of approximate recommendations on {} users", sample);
+        return userService.measureRecommendationRecall(sample);
+    }
 }
@@ -0,0 +1,6 @@
+package dev.bolohonov.filmorate.enums;
+
+public enum SuggestionType {
+    FILM,
+    DIRECTOR
+}
@@ -0,0 +1,13 @@
+package dev.bolohonov.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkLike {
+    private Integer filmId;
+    private Integer userId;
+}
@@ -0,0 +1,20 @@
+package dev.bolohonov.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkLikeReport {
+    private long accepted;
+    private long duplicates;
+    private long rejected;
+
+    public void add(BulkLikeReport other) {
+        accepted += other.accepted;
+        duplicates += other.duplicates;
+        rejected += other.rejected;
+    }
+}
@@ -0,0 +1,13 @@
+package dev.bolohonov.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class FriendshipDistance {
+    private Integer userId;
+    private Integer otherId;
+    private Integer distance;
+    private int maxDistance;
+}
@@ -0,0 +1,13 @@
+package dev.bolohonov.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class RecallReport {
+    private int users;
+    private double neighbourRecall;
+    private double recommendationMatch;
+    private double candidateRatio;
+}
@@ -0,0 +1,14 @@
+package dev.bolohonov.filmorate.model;
+
+import dev.bolohonov.filmorate.enums.SuggestionType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class Suggestion {
+    private SuggestionType type;
+    private int id;
+    private String name;
+    private int likes;
+}
@@ -8,7 +8,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
-import java.util.Collection;
+import java.util.List;
 
 @Slf4j
 @Service
@@ -22,10 +22,10 @@ public class EventService {
         this.userStorage = userStorage;
     }
 
-    public Collection<Event> getFeedForUser(int id) {
+    public List<Event> getFeedPage(int id, int beforeId, int limit) {
         if (userStorage.findUserById(id).isEmpty()) {
             throw new UserNotFoundException("Пользователь не найден");
         }
-        return eventStorage.getFeedForUser(id);
+        return eventStorage.getFeedPage(id, beforeId, limit);
     }
 }
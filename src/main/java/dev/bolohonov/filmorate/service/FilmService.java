@@ -7,6 +7,7 @@ import dev.bolohonov.filmorate.exceptions.ValidationException;
 import dev.bolohonov.filmorate.model.Film;
 import dev.bolohonov.filmorate.model.Genre;
 import dev.bolohonov.filmorate.model.Mpa;
+import dev.bolohonov.filmorate.model.Suggestion;
 import dev.bolohonov.filmorate.model.User;
 import dev.bolohonov.filmorate.storage.*;
 import lombok.extern.slf4j.Slf4j;
@@ -19,6 +20,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import static java.util.stream.Collectors.toList;
 
@@ -51,6 +53,14 @@ public class FilmService {
         return filmStorage.getFilms();
     }
 
+    public void streamFilms(Consumer<Film> consumer) {
+        filmStorage.streamFilms(consumer);
+    }
+
+    public List<Film> getFilmsPage(int afterId, int limit) {
+        return filmStorage.getFilmsPage(afterId, limit);
+    }
+
     public Film addFilm(Film film) {
         if (validateFilm(film)) {
             filmStorage.addFilm(film);
@@ -78,20 +88,16 @@ public class FilmService {
     }
 
     public Optional<Film> addLike(Integer filmId, Integer userId) {
-        if (userService.getUserById(userId).isPresent() && filmStorage.getFilmById(filmId).isPresent()) {
-            likesStorage.addLike(filmId, userId);
-            eventStorage.addEvent(userId, filmId, EventType.LIKE, OperationType.ADD);
-            log.info("User {} likes film with ID {}", userId, filmId);
-        }
+        likesStorage.addLike(filmId, userId);
+        eventStorage.addEvent(userId, filmId, EventType.LIKE, OperationType.ADD);
+        log.info("User {} likes film with ID {}", userId, filmId);
         return filmStorage.getFilmById(filmId);
     }
 
     public Optional<Film> removeLike(Integer filmId, Integer userId) {
-        if (userService.getUserById(userId).isPresent() && filmStorage.getFilmById(filmId).isPresent()) {
-            likesStorage.removeLike(filmId, userId);
-            eventStorage.addEvent(userId, filmId, EventType.LIKE, OperationType.REMOVE);
-            log.info("User {} remove like from film with ID {}", userId, filmId);
-        }
+        likesStorage.removeLike(filmId, userId);
+        eventStorage.addEvent(userId, filmId, EventType.LIKE, OperationType.REMOVE);
+        log.info("User {} remove like from film with ID {}", userId, filmId);
         return filmStorage.getFilmById(filmId);
     }
 
@@ -99,15 +105,16 @@ public class FilmService {
         return likesStorage.getFilmsByLikes(count, genreId, year);
     }
 
+    public Collection<Film> getSimilarFilms(Integer filmId, Integer count) {
+        filmStorage.getFilmById(filmId);
+        return likesStorage.getSimilarFilms(filmId, count);
+    }
+
     public List<Film> getCommonFilms(Integer userId, Integer friendId) {
         Optional<User> user = userService.getUserById(userId);
         Optional<User> friend = userService.getUserById(friendId);
         if (user.isPresent() && friend.isPresent()) {
-            return filmStorage
-                    .getCommonFilmsBetweenTwoUsers(userId, friendId)
-                    .stream()
-                    .sorted((o1, o2) -> o2.getLikes().size() - o1.getLikes().size())
-                    .collect(toList());
+            return new ArrayList<>(filmStorage.getCommonFilmsBetweenTwoUsers(userId, friendId));
         }
         return new ArrayList<>();
     }
@@ -133,6 +140,10 @@ public class FilmService {
             return filmStorage.search(query, by);
     }
 
+    public Collection<Suggestion> suggest(String prefix, Integer count) {
+        return filmStorage.suggest(prefix, count);
+    }
+
 
     public List<Film> getFilmsByDirectorSortedByLikeOrYear(Integer directorId, String sortBy) {
         Collection<Film> films = filmStorage.findFilmsByDirectorId(directorId);
@@ -0,0 +1,97 @@
+package dev.bolohonov.filmorate.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import dev.bolohonov.filmorate.model.BulkLike;
+import dev.bolohonov.filmorate.model.BulkLikeReport;
+import dev.bolohonov.filmorate.storage.LikesStorage;
+import dev.bolohonov.filmorate.storage.LikesWriteBuffer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Импорт лайков из NDJSON: по одному объекту {@code {"filmId": .., "userId": ..}} на строку.
+ * Поток читается построчно и пишется пачками по chunk-size лайков, каждая пачка в своей транзакции,
+ * поэтому в памяти одновременно лежит не больше одной пачки.
+ */
+@Slf4j
+@Service
+public class LikesImportService {
+    private final LikesStorage likesStorage;
+    private final LikesWriteBuffer likesWriteBuffer;
+    private final ObjectReader reader;
+    private final int chunkSize;
+
+    public LikesImportService(LikesStorage likesStorage, LikesWriteBuffer likesWriteBuffer, ObjectMapper objectMapper,
+                              @Value("${filmorate.likes.bulk.chunk-size:1000}") int chunkSize) {
+        this.likesStorage = likesStorage;
+        this.likesWriteBuffer = likesWriteBuffer;
+        this.reader = objectMapper.readerFor(BulkLike.class);
+        this.chunkSize = chunkSize;
+    }
+
+    public BulkLikeReport importLikes(InputStream input, boolean withEvents) throws IOException {
+        BulkLikeReport report = new BulkLikeReport();
+        List<BulkLike> chunk = new ArrayList<>(chunkSize);
+        BufferedReader lines = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        String line;
+        while ((line = lines.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                chunk.add(reader.readValue(line));
+            } catch (JsonProcessingException e) {
+                log.warn("Строка импорта лайков не разобрана: {}", e.getOriginalMessage());
+                report.setRejected(report.getRejected() + 1);
+                continue;
+            }
+            if (chunk.size() >= chunkSize) {
+                report.add(write(chunk, withEvents));
+                chunk.clear();
+            }
+        }
+        report.add(write(chunk, withEvents));
+        log.info("Импорт лайков: принято {}, дубликатов {}, отклонено {}",
+                report.getAccepted(), report.getDuplicates(), report.getRejected());
+        return report;
+    }
+
+    /**
+     * Пишет пачку целиком; если фильм или пользователь удален после проверки id,
+     * пачка откатывается и пишется по одному лайку, чтобы отклонить только проблемные.
+     * Отложенные одиночные лайки дописываются до транзакции пачки.
+     */
+    private BulkLikeReport write(List<BulkLike> chunk, boolean withEvents) {
+        if (chunk.isEmpty()) {
+            return new BulkLikeReport();
+        }
+        likesWriteBuffer.flushAndWait();
+        try {
+            return likesStorage.addLikes(chunk, withEvents);
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Пачка лайков не записана, запись по одному: {}", e.getMessage());
+        }
+        BulkLikeReport report = new BulkLikeReport();
+        for (BulkLike like : chunk) {
+            try {
+                report.add(likesStorage.addLikes(Collections.singletonList(like), withEvents));
+            } catch (DataIntegrityViolationException e) {
+                report.setRejected(report.getRejected() + 1);
+            }
+        }
+        return report;
+    }
+}
@@ -62,6 +62,12 @@ public class ReviewService {
         return reviewStorage.getAllReviewsByFilmId(id, count);
     }
 
+    public List<Review> getReviewsPageByFilmId(int id, int afterId, int limit) {
+        log.info("Get reviews page by film id:{} after review id:{}", id, afterId);
+
+        return reviewStorage.getReviewsPageByFilmId(id, afterId, limit);
+    }
+
     public Review addLikeReview(int reviewId, int userId) {
         log.info("User with id:{} like the review with id:{}", userId, reviewId);
 
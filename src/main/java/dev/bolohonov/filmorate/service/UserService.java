@@ -5,6 +5,8 @@ import dev.bolohonov.filmorate.enums.OperationType;
 import dev.bolohonov.filmorate.exceptions.UserNotFoundException;
 import dev.bolohonov.filmorate.exceptions.ValidationException;
 import dev.bolohonov.filmorate.model.Film;
+import dev.bolohonov.filmorate.model.FriendshipDistance;
+import dev.bolohonov.filmorate.model.RecallReport;
 import dev.bolohonov.filmorate.model.User;
 import dev.bolohonov.filmorate.storage.EventStorage;
 import dev.bolohonov.filmorate.storage.FriendsStorage;
@@ -17,11 +19,15 @@ import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 @Slf4j
 @Service
 public class UserService {
+    private static final int MAX_FRIENDSHIP_DISTANCE = 6;
+
     private final UserStorage userStorage;
     private final FriendsStorage friendsStorage;
     private final EventStorage eventStorage;
@@ -41,6 +47,14 @@ public class UserService {
         return userStorage.getUsers();
     }
 
+    public void streamUsers(Consumer<User> consumer) {
+        userStorage.streamUsers(consumer);
+    }
+
+    public List<User> getUsersPage(int afterId, int limit) {
+        return userStorage.getUsersPage(afterId, limit);
+    }
+
     public User addUser(User user) {
         if (validateUser(user) && validateEmailNotDuplicated(user)) {
             userStorage.addUser(user);
@@ -92,11 +106,32 @@ public class UserService {
         return friendsStorage.getUserFriends(userId);
     }
 
+    public List<User> getUserFriendsPage(Integer userId, int afterId, int limit) {
+        log.info("User with ID {} get friends page after {}", userId, afterId);
+        return friendsStorage.getUserFriendsPage(userId, afterId, limit);
+    }
+
     public Collection<User> getMatchingFriends(Integer id, Integer otherId) {
         log.info("User with ID {} get matching friends with user {}", id, otherId);
         return friendsStorage.getMatchingFriends(id, otherId);
     }
 
+    public List<User> getFriendSuggestions(Integer userId, int count) {
+        log.info("User with ID {} get {} friend suggestions", userId, count);
+        return friendsStorage.getFriendSuggestions(userId, count);
+    }
+
+    /**
+     * Расстояние null означает, что цепочка друзей длиннее MAX_FRIENDSHIP_DISTANCE или ее нет.
+     */
+    public FriendshipDistance getFriendshipDistance(Integer userId, Integer otherId) {
+        this.getUserById(userId);
+        this.getUserById(otherId);
+        Integer distance = friendsStorage.getDistance(userId, otherId, MAX_FRIENDSHIP_DISTANCE).orElse(null);
+        log.info("Distance from user with ID {} to user {} is {}", userId, otherId, distance);
+        return new FriendshipDistance(userId, otherId, distance, MAX_FRIENDSHIP_DISTANCE);
+    }
+
     private static boolean validateUser(User user) {
         if (user.getLogin().contains(" ")) {
             log.warn("Whitespaces in login");
@@ -124,6 +159,10 @@ public class UserService {
         return true;
     }
 
+    public RecallReport measureRecommendationRecall(Integer sample) {
+        return likesStorage.measureRecommendationRecall(sample);
+    }
+
     public Collection<Film> getRecommendations(Integer userId) {
         if (!userStorage.findUserById(userId).isPresent()) {
             throw new UserNotFoundException("Пользователь не найден");
@@ -0,0 +1,285 @@
+package dev.bolohonov.filmorate.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Матрица совместных лайков фильм x фильм: сколько пользователей лайкнули оба фильма.
+ * Строка хранит не больше rowCapacity соседей; при переполнении вытесняется сосед с наименьшим
+ * счетчиком, а новый получает его счетчик плюс один (space-saving), поэтому для редких пар
+ * счетчики приблизительные, а сильные связи сохраняются.
+ */
+@Slf4j
+@Component
+public class CoLikeMatrix {
+    private final LikesMatrix likesMatrix;
+    private final int rowCapacity;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, Row> rows = new HashMap<>();
+
+    public CoLikeMatrix(LikesMatrix likesMatrix,
+                        @Value("${filmorate.similar.row-capacity:100}") int rowCapacity) {
+        this.likesMatrix = likesMatrix;
+        this.rowCapacity = rowCapacity;
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        lock.writeLock().lock();
+        likesMatrix.readLock().lock();
+        try {
+            rows.clear();
+            for (int filmId : likesMatrix.likedFilms()) {
+                Map<Integer, Integer> counts = new HashMap<>();
+                likesMatrix.usersOf(filmId).forEach((int userId) ->
+                        likesMatrix.filmsOf(userId).forEach((int otherId) -> {
+                            if (otherId != filmId) {
+                                counts.merge(otherId, 1, Integer::sum);
+                            }
+                        }));
+                long[] ranked = rank(counts);
+                Row row = new Row(rowCapacity);
+                for (int i = 0; i < Math.min(ranked.length, rowCapacity); i++) {
+                    row.put(filmId(ranked[i]), count(ranked[i]));
+                }
+                if (row.size > 0) {
+                    rows.put(filmId, row);
+                }
+            }
+            log.info("Матрица совместных лайков построена для {} фильмов", rows.size());
+        } finally {
+            likesMatrix.readLock().unlock();
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Учитывает новый лайк; otherFilms - остальные фильмы, которые понравились пользователю.
+     */
+    public void like(int filmId, int[] otherFilms) {
+        lock.writeLock().lock();
+        try {
+            for (int otherId : otherFilms) {
+                if (otherId != filmId) {
+                    row(filmId).increment(otherId);
+                    row(otherId).increment(filmId);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Учитывает удаление лайка; otherFilms - остальные фильмы, которые понравились пользователю.
+     */
+    public void unlike(int filmId, int[] otherFilms) {
+        lock.writeLock().lock();
+        try {
+            for (int otherId : otherFilms) {
+                if (otherId != filmId) {
+                    decrement(filmId, otherId);
+                    decrement(otherId, filmId);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Учитывает удаление пользователя со всеми его лайками.
+     */
+    public void removeUser(int[] films) {
+        lock.writeLock().lock();
+        try {
+            for (int filmId : films) {
+                for (int otherId : films) {
+                    if (otherId != filmId) {
+                        decrement(filmId, otherId);
+                    }
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeFilm(int filmId) {
+        lock.writeLock().lock();
+        try {
+            rows.remove(filmId);
+            rows.values().forEach(row -> row.remove(filmId));
+            rows.values().removeIf(row -> row.size == 0);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Id фильмов, чаще всего лайкнутых вместе с данным, по убыванию числа совместных лайков, при равенстве по id.
+     */
+    public List<Integer> getSimilar(int filmId, int count) {
+        lock.readLock().lock();
+        try {
+            Row row = rows.get(filmId);
+            if (row == null) {
+                return Collections.emptyList();
+            }
+            long[] ranked = new long[row.size];
+            for (int i = 0; i < row.size; i++) {
+                ranked[i] = entry(row.counts[i], row.ids[i]);
+            }
+            Arrays.sort(ranked);
+            return ids(ranked, count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Item-based рекомендации: непросмотренные фильмы с наибольшей суммой совместных лайков
+     * с фильмами пользователя.
+     */
+    public List<Integer> recommend(int[] userFilms, int count) {
+        lock.readLock().lock();
+        try {
+            RoaringBitmap seen = RoaringBitmap.bitmapOf(userFilms);
+            Map<Integer, Integer> scores = new HashMap<>();
+            for (int filmId : userFilms) {
+                Row row = rows.get(filmId);
+                if (row == null) {
+                    continue;
+                }
+                for (int i = 0; i < row.size; i++) {
+                    if (!seen.contains(row.ids[i])) {
+                        scores.merge(row.ids[i], row.counts[i], Integer::sum);
+                    }
+                }
+            }
+            return ids(rank(scores), count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Row row(int filmId) {
+        return rows.computeIfAbsent(filmId, id -> new Row(rowCapacity));
+    }
+
+    private void decrement(int filmId, int otherId) {
+        Row row = rows.get(filmId);
+        if (row != null) {
+            row.decrement(otherId);
+            if (row.size == 0) {
+                rows.remove(filmId);
+            }
+        }
+    }
+
+    private static long[] rank(Map<Integer, Integer> counts) {
+        long[] ranked = new long[counts.size()];
+        int i = 0;
+        for (Map.Entry<Integer, Integer> e : counts.entrySet()) {
+            ranked[i++] = entry(e.getValue(), e.getKey());
+        }
+        Arrays.sort(ranked);
+        return ranked;
+    }
+
+    private static List<Integer> ids(long[] ranked, int count) {
+        List<Integer> ids = new ArrayList<>(Math.min(count, ranked.length));
+        for (int i = 0; i < ranked.length && ids.size() < count; i++) {
+            ids.add(filmId(ranked[i]));
+        }
+        return ids;
+    }
+
+    /**
+     * Ключ упорядочивает фильмы по убыванию счетчика, при равенстве по возрастанию id.
+     */
+    private static long entry(int count, int filmId) {
+        return ((long) (Integer.MAX_VALUE - count) << 32) | filmId;
+    }
+
+    private static int filmId(long entry) {
+        return (int) entry;
+    }
+
+    private static int count(long entry) {
+        return Integer.MAX_VALUE - (int) (entry >>> 32);
+    }
+
+    /**
+     * Строка матрицы на параллельных примитивных массивах ограниченной длины.
+     */
+    private static final class Row {
+        private final int[] ids;
+        private final int[] counts;
+        private int size;
+
+        Row(int capacity) {
+            this.ids = new int[capacity];
+            this.counts = new int[capacity];
+        }
+
+        void put(int id, int count) {
+            ids[size] = id;
+            counts[size++] = count;
+        }
+
+        void increment(int id) {
+            int i = indexOf(id);
+            if (i >= 0) {
+                counts[i]++;
+            } else if (size < ids.length) {
+                put(id, 1);
+            } else if (size > 0) {
+                int min = 0;
+                for (int j = 1; j < size; j++) {
+                    if (counts[j] < counts[min]) {
+                        min = j;
+                    }
+                }
+                ids[min] = id;
+                counts[min]++;
+            }
+        }
+
+        void decrement(int id) {
+            int i = indexOf(id);
+            if (i >= 0 && --counts[i] <= 0) {
+                removeAt(i);
+            }
+        }
+
+        void remove(int id) {
+            int i = indexOf(id);
+            if (i >= 0) {
+                removeAt(i);
+            }
+        }
+
+        private void removeAt(int i) {
+            size--;
+            ids[i] = ids[size];
+            counts[i] = counts[size];
+        }
+
+        private int indexOf(int id) {
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == id) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
@@ -5,11 +5,11 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
-import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.stereotype.Component;
 
 import java.sql.PreparedStatement;
-import java.util.ArrayList;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,6 +20,7 @@ import static java.util.Optional.of;
 public class DirectorDbStorage implements DirectorStorage {
 
     private final JdbcTemplate jdbcTemplate;
+    private final FilmSearchIndex filmSearchIndex;
     private static final String SQL_INSERT =
             "insert into director (name) values (?)";
     private static final String SQL_SELECT =
@@ -41,26 +42,19 @@ public class DirectorDbStorage implements DirectorStorage {
             return stmt;
         }, keyHolder);
         director.setId(keyHolder.getKey().intValue());
+        filmSearchIndex.putDirector(director.getId(), director.getName());
 
         return director;
     }
 
     @Override
     public List<Director> findAllDirectors() {
-        SqlRowSet filmAsRowSet = jdbcTemplate.queryForRowSet(SQL_SELECT);
-        List<Director> directors = new ArrayList<>();
-        while (filmAsRowSet.next()) {
-            Director director = buildDirector(filmAsRowSet);
-            directors.add(director);
-        }
-        return directors;
+        return jdbcTemplate.query(SQL_SELECT, this::mapRowToDirector);
     }
 
     @Override
     public Optional<Director> findDirectorById(Integer id) {
-        return of(jdbcTemplate.queryForRowSet(SQL_SELECT_WITH_ID, id))
-                .filter(SqlRowSet::next)
-                .map(this::buildDirector);
+        return jdbcTemplate.query(SQL_SELECT_WITH_ID, this::mapRowToDirector, id).stream().findFirst();
     }
 
     @Override
@@ -70,18 +64,23 @@ public class DirectorDbStorage implements DirectorStorage {
                 director.getName(),
                 id
         );
+        filmSearchIndex.putDirector(id, director.getName());
         return of(director);
     }
 
     @Override
     public boolean deleteDirector(Integer id) {
-        return jdbcTemplate.update(SQL_DELETE, id) > 0;
+        boolean deleted = jdbcTemplate.update(SQL_DELETE, id) > 0;
+        if (deleted) {
+            filmSearchIndex.removeDirector(id);
+        }
+        return deleted;
     }
 
-    private Director buildDirector(SqlRowSet filmAsRowSet) {
+    private Director mapRowToDirector(ResultSet resultSet, int rowNum) throws SQLException {
         return Director.builder()
-                .id(filmAsRowSet.getInt("id"))
-                .name(filmAsRowSet.getString("name"))
+                .id(resultSet.getInt("id"))
+                .name(resultSet.getString("name"))
                 .build();
     }
 }
\ No newline at end of file
@@ -11,13 +11,17 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.time.LocalDateTime;
-import java.util.Collection;
+import java.util.*;
 
 @Slf4j
 @Component
 public class EventDbStorage implements EventStorage {
 
     private final JdbcTemplate jdbcTemplate;
+    private final LikesWriteBuffer likesWriteBuffer;
+    private final FriendGraph friendGraph;
+
+    private static final int FRIENDS_PER_QUERY = 100;
 
     private static final String SQL_SELECT_EVENTS_FROM_FRIENDS =
             "SELECT id, event_time, user_id, event_type, operation, entity_id " +
@@ -29,18 +33,31 @@ public class EventDbStorage implements EventStorage {
                     "FROM friends as fr " +
                     "WHERE fr.second_user_id = ? AND fr.accept_second = true) " +
                     "ORDER BY event_time DESC";
+    private static final String SQL_SELECT_FRIEND_EVENTS_BETWEEN =
+            "SELECT id, event_time, user_id, event_type, operation, entity_id FROM event " +
+                    "WHERE user_id = ? AND id < ? AND id > ? ORDER BY id DESC LIMIT ?";
     private static final String SQL_INSERT_EVENT =
             "INSERT INTO event(event_time, user_id, event_type, operation, entity_id ) " +
                     "VALUES (?, ?, ?, ?, ?)";
+    private static final String SQL_INSERT_EVENT_IF_ABSENT =
+            "INSERT INTO event(event_time, user_id, event_type, operation, entity_id) " +
+                    "SELECT ?, ?, ?, ?, ? WHERE NOT EXISTS (SELECT 1 FROM event " +
+                    "WHERE user_id = ? AND event_type = ? AND operation = ? AND entity_id = ?)";
     private final String SQL_SELECT = "SELECT id FROM event " +
             "WHERE user_id = ? AND event_type = ? AND operation = ? AND entity_id = ?";
 
-    public EventDbStorage(JdbcTemplate jdbcTemplate) {
+    public EventDbStorage(JdbcTemplate jdbcTemplate, LikesWriteBuffer likesWriteBuffer, FriendGraph friendGraph) {
         this.jdbcTemplate = jdbcTemplate;
+        this.likesWriteBuffer = likesWriteBuffer;
+        this.friendGraph = friendGraph;
     }
 
     @Override
     public void addEvent(int userId, int entityId, EventType eventType, OperationType operation) {
+        if (eventType == EventType.LIKE && likesWriteBuffer.isEnabled()) {
+            likesWriteBuffer.addEvent(userId, entityId, eventType, operation);
+            return;
+        }
         if (!isEventExist(userId, entityId, eventType, operation)) {
             jdbcTemplate.update(SQL_INSERT_EVENT, Timestamp.valueOf(LocalDateTime.now()), userId, eventType.name(),
                     operation.name(), entityId);
@@ -50,11 +67,92 @@ public class EventDbStorage implements EventStorage {
         }
     }
 
+    /**
+     * Пакетная запись событий в текущей транзакции; уже записанные события пропускаются.
+     */
+    @Override
+    public void addEvents(List<Event> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        List<Object[]> args = new ArrayList<>(events.size());
+        for (Event event : events) {
+            Timestamp time = Timestamp.valueOf(event.getTimestamp() != null ? event.getTimestamp()
+                    : LocalDateTime.now());
+            args.add(new Object[]{time, event.getUserId(), event.getEventType().name(),
+                    event.getOperation().name(), event.getEntityId(), event.getUserId(),
+                    event.getEventType().name(), event.getOperation().name(), event.getEntityId()});
+        }
+        jdbcTemplate.batchUpdate(SQL_INSERT_EVENT_IF_ABSENT, args);
+        log.info("Записано {} событий пакетом", events.size());
+    }
+
     @Override
     public Collection<Event> getFeedForUser(int id) {
         return jdbcTemplate.query(SQL_SELECT_EVENTS_FROM_FRIENDS, (rs, rowNum) -> makeEvent(rs), id, id);
     }
 
+    /**
+     * Страница ленты по убыванию id событий. Для каждого друга читается не больше limit событий
+     * из диапазона индекса (user_id, id), диапазоны сливаются k-путевым слиянием. Друзья берутся
+     * из {@link FriendGraph} группами по FRIENDS_PER_QUERY в одном запросе; после заполнения страницы
+     * нижняя граница диапазона поднимается до id ее последнего события.
+     */
+    @Override
+    public List<Event> getFeedPage(int id, int beforeId, int limit) {
+        int[] friendIds = friendGraph.getFriends(id);
+        List<Event> page = new ArrayList<>();
+        int floorId = 0;
+        for (int from = 0; from < friendIds.length; from += FRIENDS_PER_QUERY) {
+            int to = Math.min(from + FRIENDS_PER_QUERY, friendIds.length);
+            List<String> ranges = new ArrayList<>(to - from);
+            List<Object> args = new ArrayList<>(4 * (to - from));
+            for (int i = from; i < to; i++) {
+                ranges.add("(" + SQL_SELECT_FRIEND_EVENTS_BETWEEN + ")");
+                args.addAll(List.of(friendIds[i], beforeId, floorId, limit));
+            }
+            Map<Integer, List<Event>> runs = new HashMap<>();
+            jdbcTemplate.query(String.join(" UNION ALL ", ranges), rs -> {
+                Event event = makeEvent(rs);
+                runs.computeIfAbsent(event.getUserId(), userId -> new ArrayList<>()).add(event);
+            }, args.toArray());
+            List<List<Event>> sortedRuns = new ArrayList<>(runs.size() + 1);
+            sortedRuns.add(page);
+            for (List<Event> run : runs.values()) {
+                run.sort(Comparator.comparingInt(Event::getId).reversed());
+                sortedRuns.add(run);
+            }
+            page = merge(sortedRuns, limit);
+            if (page.size() >= limit) {
+                floorId = page.get(page.size() - 1).getId();
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Слияние списков, каждый из которых упорядочен по убыванию id, в первые limit событий.
+     */
+    private static List<Event> merge(List<List<Event>> runs, int limit) {
+        PriorityQueue<int[]> heads = new PriorityQueue<>(Math.max(1, runs.size()),
+                Comparator.comparingInt((int[] head) -> runs.get(head[0]).get(head[1]).getId()).reversed());
+        for (int run = 0; run < runs.size(); run++) {
+            if (!runs.get(run).isEmpty()) {
+                heads.add(new int[]{run, 0});
+            }
+        }
+        List<Event> merged = new ArrayList<>(limit);
+        while (merged.size() < limit && !heads.isEmpty()) {
+            int[] head = heads.poll();
+            List<Event> run = runs.get(head[0]);
+            merged.add(run.get(head[1]));
+            if (++head[1] < run.size()) {
+                heads.add(head);
+            }
+        }
+        return merged;
+    }
+
     private Event makeEvent(ResultSet rs) throws SQLException {
         return Event.builder().
                 id(rs.getInt("id"))
@@ -5,10 +5,15 @@ import dev.bolohonov.filmorate.enums.OperationType;
 import dev.bolohonov.filmorate.model.Event;
 
 import java.util.Collection;
+import java.util.List;
 
 public interface EventStorage {
 
     void addEvent(int userId, int entityId, EventType eventType, OperationType operation);
 
+    void addEvents(List<Event> events);
+
     Collection<Event> getFeedForUser(int id);
+
+    List<Event> getFeedPage(int id, int beforeId, int limit);
 }
@@ -0,0 +1,196 @@
+package dev.bolohonov.filmorate.storage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Неизменяемая модель матричной факторизации: векторы пользователей и фильмов лежат подряд
+ * в плоских массивах float, строка i занимает элементы [i * factors, (i + 1) * factors).
+ * Обучение - implicit ALS (Hu, Koren, Volinsky): лайк дает предпочтение 1 с уверенностью 1 + alpha,
+ * отсутствие лайка - предпочтение 0 с уверенностью 1.
+ */
+final class FactorModel {
+    private final int factors;
+    private final int[] userIds;
+    private final int[] filmIds;
+    private final float[] userFactors;
+    private final float[] filmFactors;
+
+    private FactorModel(int factors, int[] userIds, int[] filmIds, float[] userFactors, float[] filmFactors) {
+        this.factors = factors;
+        this.userIds = userIds;
+        this.filmIds = filmIds;
+        this.userFactors = userFactors;
+        this.filmFactors = filmFactors;
+    }
+
+    /**
+     * @param userIds   id пользователей по возрастанию
+     * @param filmIds   id фильмов по возрастанию
+     * @param userFilms для каждого пользователя индексы понравившихся фильмов в filmIds
+     */
+    static FactorModel train(int[] userIds, int[] filmIds, int[][] userFilms, int factors, int iterations,
+                             double lambda, double alpha, long seed) {
+        int[][] filmUsers = transpose(userFilms, filmIds.length);
+        Random random = new Random(seed);
+        float[] userFactors = new float[userIds.length * factors];
+        float[] filmFactors = new float[filmIds.length * factors];
+        for (int i = 0; i < filmFactors.length; i++) {
+            filmFactors[i] = (float) (random.nextGaussian() * 0.01);
+        }
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            solve(userFactors, filmFactors, userFilms, factors, lambda, alpha);
+            solve(filmFactors, userFactors, filmUsers, factors, lambda, alpha);
+        }
+        return new FactorModel(factors, userIds, filmIds, userFactors, filmFactors);
+    }
+
+    boolean hasUser(int userId) {
+        return Arrays.binarySearch(userIds, userId) >= 0;
+    }
+
+    /**
+     * Id фильмов с наибольшим скалярным произведением с вектором пользователя, кроме уже понравившихся.
+     */
+    List<Integer> recommend(int userId, int[] seenFilms, int count) {
+        int user = Arrays.binarySearch(userIds, userId);
+        if (user < 0 || count <= 0) {
+            return new ArrayList<>();
+        }
+        int[] seen = seenFilms.clone();
+        Arrays.sort(seen);
+        int[] topFilms = new int[count];
+        float[] topScores = new float[count];
+        int size = 0;
+        int userOffset = user * factors;
+        for (int film = 0; film < filmIds.length; film++) {
+            if (Arrays.binarySearch(seen, filmIds[film]) >= 0) {
+                continue;
+            }
+            float score = dot(userFactors, userOffset, filmFactors, film * factors, factors);
+            if (size == count && score <= topScores[size - 1]) {
+                continue;
+            }
+            int i = size == count ? size - 1 : size++;
+            while (i > 0 && topScores[i - 1] < score) {
+                topScores[i] = topScores[i - 1];
+                topFilms[i] = topFilms[i - 1];
+                i--;
+            }
+            topScores[i] = score;
+            topFilms[i] = filmIds[film];
+        }
+        List<Integer> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(topFilms[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Пересчитывает векторы target при фиксированных векторах fixed; строки независимы и считаются параллельно.
+     */
+    private static void solve(float[] target, float[] fixed, int[][] interactions, int factors,
+                              double lambda, double alpha) {
+        double[] gram = gram(fixed, factors);
+        IntStream.range(0, interactions.length).parallel().forEach(row -> {
+            double[] a = gram.clone();
+            double[] b = new double[factors];
+            for (int i = 0; i < factors; i++) {
+                a[i * factors + i] += lambda;
+            }
+            for (int other : interactions[row]) {
+                int offset = other * factors;
+                for (int i = 0; i < factors; i++) {
+                    double yi = fixed[offset + i];
+                    b[i] += (1 + alpha) * yi;
+                    for (int j = 0; j < factors; j++) {
+                        a[i * factors + j] += alpha * yi * fixed[offset + j];
+                    }
+                }
+            }
+            double[] x = cholesky(a, b, factors);
+            int offset = row * factors;
+            for (int i = 0; i < factors; i++) {
+                target[offset + i] = (float) x[i];
+            }
+        });
+    }
+
+    private static double[] gram(float[] vectors, int factors) {
+        double[] gram = new double[factors * factors];
+        for (int offset = 0; offset < vectors.length; offset += factors) {
+            for (int i = 0; i < factors; i++) {
+                double vi = vectors[offset + i];
+                for (int j = 0; j < factors; j++) {
+                    gram[i * factors + j] += vi * vectors[offset + j];
+                }
+            }
+        }
+        return gram;
+    }
+
+    /**
+     * Решает симметричную положительно определенную систему a * x = b разложением Холецкого.
+     */
+    private static double[] cholesky(double[] a, double[] b, int n) {
+        double[] l = new double[n * n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j <= i; j++) {
+                double sum = a[i * n + j];
+                for (int k = 0; k < j; k++) {
+                    sum -= l[i * n + k] * l[j * n + k];
+                }
+                l[i * n + j] = i == j ? Math.sqrt(Math.max(sum, 1e-12)) : sum / l[j * n + j];
+            }
+        }
+        double[] y = new double[n];
+        for (int i = 0; i < n; i++) {
+            double sum = b[i];
+            for (int k = 0; k < i; k++) {
+                sum -= l[i * n + k] * y[k];
+            }
+            y[i] = sum / l[i * n + i];
+        }
+        double[] x = new double[n];
+        for (int i = n - 1; i >= 0; i--) {
+            double sum = y[i];
+            for (int k = i + 1; k < n; k++) {
+                sum -= l[k * n + i] * x[k];
+            }
+            x[i] = sum / l[i * n + i];
+        }
+        return x;
+    }
+
+    private static int[][] transpose(int[][] rows, int columns) {
+        int[] sizes = new int[columns];
+        for (int[] row : rows) {
+            for (int column : row) {
+                sizes[column]++;
+            }
+        }
+        int[][] result = new int[columns][];
+        for (int column = 0; column < columns; column++) {
+            result[column] = new int[sizes[column]];
+            sizes[column] = 0;
+        }
+        for (int row = 0; row < rows.length; row++) {
+            for (int column : rows[row]) {
+                result[column][sizes[column]++] = row;
+            }
+        }
+        return result;
+    }
+
+    private static float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        float sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+}
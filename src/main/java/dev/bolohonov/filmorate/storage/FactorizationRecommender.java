@@ -0,0 +1,138 @@
+package dev.bolohonov.filmorate.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Рекомендации по модели матричной факторизации {@link FactorModel}. Модель обучается в фоне
+ * по снимку матрицы лайков по расписанию или после retrain-after-likes новых лайков и подменяется
+ * атомарно, поэтому чтение не блокируется обучением. Пока модели нет или пользователь в нее не попал,
+ * возвращается пустой список.
+ */
+@Slf4j
+@Component
+public class FactorizationRecommender {
+    private static final long SEED = 20220501L;
+
+    private final LikesMatrix likesMatrix;
+    private final boolean enabled;
+    private final int factors;
+    private final int iterations;
+    private final double lambda;
+    private final double alpha;
+    private final int retrainAfterLikes;
+    private final AtomicReference<FactorModel> model = new AtomicReference<>();
+    private final AtomicInteger likesSinceTraining = new AtomicInteger();
+    private final AtomicBoolean training = new AtomicBoolean();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "als-trainer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public FactorizationRecommender(LikesMatrix likesMatrix,
+                                    @Value("${filmorate.recommendations.als.enabled:false}") boolean enabled,
+                                    @Value("${filmorate.recommendations.als.factors:32}") int factors,
+                                    @Value("${filmorate.recommendations.als.iterations:10}") int iterations,
+                                    @Value("${filmorate.recommendations.als.lambda:0.1}") double lambda,
+                                    @Value("${filmorate.recommendations.als.alpha:20}") double alpha,
+                                    @Value("${filmorate.recommendations.als.retrain-after-likes:1000}")
+                                    int retrainAfterLikes) {
+        this.likesMatrix = likesMatrix;
+        this.enabled = enabled;
+        this.factors = factors;
+        this.iterations = iterations;
+        this.lambda = lambda;
+        this.alpha = alpha;
+        this.retrainAfterLikes = retrainAfterLikes;
+    }
+
+    @PostConstruct
+    @Scheduled(initialDelayString = "${filmorate.recommendations.als.retrain-delay-ms:3600000}",
+            fixedDelayString = "${filmorate.recommendations.als.retrain-delay-ms:3600000}")
+    public void retrainScheduled() {
+        if (enabled) {
+            requestTraining();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public void onLike() {
+        if (enabled && likesSinceTraining.incrementAndGet() >= retrainAfterLikes) {
+            requestTraining();
+        }
+    }
+
+    public List<Integer> recommend(int userId, int count) {
+        FactorModel current = model.get();
+        if (current == null || !current.hasUser(userId)) {
+            return List.of();
+        }
+        return current.recommend(userId, likesMatrix.getFilms(userId), count);
+    }
+
+    /**
+     * Запускает обучение в фоне, если оно еще не идет.
+     */
+    public void requestTraining() {
+        if (training.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                try {
+                    train();
+                } catch (RuntimeException e) {
+                    log.error("Ошибка обучения модели рекомендаций", e);
+                } finally {
+                    training.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * Обучает модель по текущему снимку матрицы лайков и подменяет ее.
+     */
+    public void train() {
+        likesSinceTraining.set(0);
+        long started = System.currentTimeMillis();
+        int[] userIds;
+        int[] filmIds;
+        int[][] userFilms;
+        likesMatrix.readLock().lock();
+        try {
+            userIds = likesMatrix.likingUsers();
+            filmIds = likesMatrix.likedFilms();
+            userFilms = new int[userIds.length][];
+            for (int user = 0; user < userIds.length; user++) {
+                RoaringBitmap films = likesMatrix.filmsOf(userIds[user]);
+                int[] indexes = new int[films.getCardinality()];
+                int i = 0;
+                for (int filmId : films) {
+                    indexes[i++] = Arrays.binarySearch(filmIds, filmId);
+                }
+                userFilms[user] = indexes;
+            }
+        } finally {
+            likesMatrix.readLock().unlock();
+        }
+        model.set(FactorModel.train(userIds, filmIds, userFilms, factors, iterations, lambda, alpha, SEED));
+        log.info("Модель рекомендаций обучена на {} пользователях и {} фильмах за {} мс",
+                userIds.length, filmIds.length, System.currentTimeMillis() - started);
+    }
+}
@@ -3,27 +3,37 @@ package dev.bolohonov.filmorate.storage;
 import dev.bolohonov.filmorate.exceptions.FilmNotFoundException;
 import dev.bolohonov.filmorate.exceptions.FunctionalityNotSupportedException;
 import dev.bolohonov.filmorate.model.Film;
+import dev.bolohonov.filmorate.model.Suggestion;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
-import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.stereotype.Component;
 
 import java.sql.Date;
 import java.sql.*;
-import java.time.Duration;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Slf4j
 @Component("filmDbStorage")
 public class FilmDbStorage implements FilmStorage {
     private final JdbcTemplate jdbcTemplate;
-    private final MpaStorage mpaDbStorage;
-    private final DirectorDbStorage directorDbStorage;
+    private final FilmHydrator filmHydrator;
+    private final PopularityLeaderboard leaderboard;
+    private final FilmSearchIndex filmSearchIndex;
+    private final LikesMatrix likesMatrix;
+    private final CoLikeMatrix coLikeMatrix;
+    private final MinHashIndex minHashIndex;
+    private final FilmFeatureIndex filmFeatureIndex;
+    private final IdRegistry idRegistry;
+    private static final int STREAM_PAGE_SIZE = 1000;
     private static final String SQL_SELECT =
             "select id, rate, name, description, release_date, duration, mpa, director_id from film";
+    private static final String SQL_SELECT_PAGE =
+            "select id, rate, name, description, release_date, duration, mpa, director_id from film " +
+                    "where id > ? order by id limit ?";
     private static final String SQL_INSERT =
             "insert into film (rate, name, description, release_date, duration, mpa, director_id) " +
                     "values (?, ?, ?, ?, ?, ?, ?)";
@@ -35,63 +45,51 @@ public class FilmDbStorage implements FilmStorage {
     private static final String SQL_SELECT_WITH_ID =
             "select id, rate, name, description, release_date, duration, mpa, director_id " +
                     "from film where id = ?";
-    private static final String SQL_SEARCH_DIRECTOR_TITLE =
-            "select * " +
-                    "from FILM " +
-                    "LEFT JOIN " +
-                    "    (SELECT f.id, count(l.USER_ID) as likes_COUNT " +
-                    "           FROM film AS f " +
-                    "           LEFT JOIN Likes AS l ON f.id = l.film_id GROUP BY f.id) as LC ON FILM.ID = LC.ID " +
-                    "LEFT JOIN DIRECTOR D on FILM.DIRECTOR_ID = D.ID " +
-                    "WHERE D.NAME ilike ? AND FILM.NAME ilike ? " +
-                    "GROUP BY film.id order by likes_COUNT desc";
-    private static final String SQL_SEARCH_DIRECTOR =
-            "select * " +
-                    "from FILM " +
-                    "LEFT JOIN " +
-                    "    (SELECT f.id, count(l.USER_ID) as likes_COUNT " +
-                    "           FROM film AS f " +
-                    "           LEFT JOIN Likes AS l ON f.id = l.film_id GROUP BY f.id) as LC ON FILM.ID = LC.ID " +
-                    "LEFT JOIN DIRECTOR D on FILM.DIRECTOR_ID = D.ID " +
-                    "WHERE D.NAME ilike ? " +
-                    "GROUP BY film.id order by likes_COUNT desc";
-    private static final String SQL_SEARCH_TITLE =
-            "select * " +
-                    "from FILM " +
-                    "LEFT JOIN " +
-                    "    (SELECT f.id, count(l.USER_ID) as likes_COUNT " +
-                    "           FROM film AS f " +
-                    "           LEFT JOIN Likes AS l ON f.id = l.film_id GROUP BY f.id) as LC ON FILM.ID = LC.ID " +
-                    "WHERE FILM.NAME ilike ? " +
-                    "GROUP BY film.id order by likes_COUNT desc";
-
-    private static final String SQL_FIND_ALL_LIKES =
-
-            "SELECT user_id " +
-            "FROM likes " +
-            "WHERE film_id = ?;";
     public static final String SQL_FIND_ALL_FILMS_BY_DIRECTOR_ID =
-            "SELECT id " +
+            "SELECT id, rate, name, description, release_date, duration, mpa, director_id " +
             "FROM film " +
             "WHERE director_id = ?;";
-    public static final String SQL_SELECT_COMMON_FILMS_IDS_BETWEEN_TWO_USERS =
-            "SELECT film_id\n" +
-                    "FROM likes\n" +
-                    "WHERE user_id = ?\n" +
-                    "INTERSECT\n" +
-                    "SELECT film_id\n" +
-                    "FROM likes\n" +
-                    "WHERE user_id = ?;";
-
-    public FilmDbStorage(JdbcTemplate jdbcTemplate, MpaStorage mpaDbStorage, DirectorDbStorage directorDbStorage) {
+
+    public FilmDbStorage(JdbcTemplate jdbcTemplate, FilmHydrator filmHydrator, PopularityLeaderboard leaderboard,
+                         FilmSearchIndex filmSearchIndex, LikesMatrix likesMatrix,
+                         CoLikeMatrix coLikeMatrix, MinHashIndex minHashIndex,
+                         FilmFeatureIndex filmFeatureIndex, IdRegistry idRegistry) {
         this.jdbcTemplate = jdbcTemplate;
-        this.mpaDbStorage = mpaDbStorage;
-        this.directorDbStorage = directorDbStorage;
+        this.filmHydrator = filmHydrator;
+        this.leaderboard = leaderboard;
+        this.filmSearchIndex = filmSearchIndex;
+        this.likesMatrix = likesMatrix;
+        this.coLikeMatrix = coLikeMatrix;
+        this.minHashIndex = minHashIndex;
+        this.filmFeatureIndex = filmFeatureIndex;
+        this.idRegistry = idRegistry;
     }
 
     @Override
     public Collection<Film> getFilms() {
-        return jdbcTemplate.query(SQL_SELECT, this::mapRowToFilm);
+        return filmHydrator.query(SQL_SELECT);
+    }
+
+    /**
+     * Читает фильмы страницами по id и отдает consumer страницу только после завершения ее запросов,
+     * поэтому во время сборки фильмов и записи ответа клиенту курсор и соединение не удерживаются.
+     */
+    @Override
+    public void streamFilms(Consumer<Film> consumer) {
+        int afterId = 0;
+        List<Film> page;
+        do {
+            page = getFilmsPage(afterId, STREAM_PAGE_SIZE);
+            page.forEach(consumer);
+            if (!page.isEmpty()) {
+                afterId = page.get(page.size() - 1).getId();
+            }
+        } while (page.size() == STREAM_PAGE_SIZE);
+    }
+
+    @Override
+    public List<Film> getFilmsPage(int afterId, int limit) {
+        return filmHydrator.query(SQL_SELECT_PAGE, afterId, limit);
     }
 
     @Override
@@ -113,12 +111,26 @@ public class FilmDbStorage implements FilmStorage {
             return stmt;
         }, keyHolder);
         film.setId(Objects.requireNonNull(keyHolder.getKey()).intValue());
+        idRegistry.addFilm(film.getId());
+        leaderboard.addFilm(film.getId(), film.getReleaseDate().getYear());
+        filmSearchIndex.putFilm(film.getId(), film.getName(), getDirectorId(film));
+        filmFeatureIndex.putFilm(film);
         return film;
     }
 
     @Override
     public void deleteFilm(Integer id) {
         jdbcTemplate.update(SQL_DELETE, id);
+        int[] likedBy = likesMatrix.getUsers(id);
+        leaderboard.removeFilm(id);
+        filmSearchIndex.removeFilm(id);
+        likesMatrix.removeFilm(id);
+        coLikeMatrix.removeFilm(id);
+        filmFeatureIndex.removeFilm(id);
+        idRegistry.removeFilm(id);
+        for (int userId : likedBy) {
+            minHashIndex.update(userId, likesMatrix.getFilms(userId));
+        }
     }
 
     @Override
@@ -132,20 +144,20 @@ public class FilmDbStorage implements FilmStorage {
                 film.getMpa().getId(),
                 film.getDirector(),
                 film.getId());
+        leaderboard.updateFilm(film.getId(), film.getReleaseDate().getYear());
+        filmSearchIndex.putFilm(film.getId(), film.getName(), getDirectorId(film));
+        filmFeatureIndex.putFilm(film);
         return film;
     }
 
     @Override
     public Optional<Film> getFilmById(Integer id) {
-        Optional<Film> film;
-        try {
-            film = Optional.ofNullable(jdbcTemplate.queryForObject(SQL_SELECT_WITH_ID,
-                    this::mapRowToFilm, id));
-        } catch (Exception exp) {
+        List<Film> films = filmHydrator.query(SQL_SELECT_WITH_ID, id);
+        if (films.isEmpty()) {
             log.warn("Фильм с id {} не найден", id);
-            throw new FilmNotFoundException(exp.getMessage());
+            throw new FilmNotFoundException(String.format("Фильм с id %d не найден", id));
         }
-        return film;
+        return Optional.of(films.get(0));
     }
 
     @Override
@@ -155,61 +167,40 @@ public class FilmDbStorage implements FilmStorage {
                 .collect(Collectors.toList());
         if (list.contains("director") && list.contains("title") && list.size() == 2) {
             log.info("Получение списка фильмов по режиссеру и наименованию. Запрос - {}", query);
-            return jdbcTemplate.query(SQL_SEARCH_DIRECTOR_TITLE, this::mapRowToFilm, "%" + query + "%", "%" + query + "%");
+            return filmHydrator.findByIds(filmSearchIndex.searchByTitleAndDirector(query));
         }
         if (list.contains("director") && list.size() == 1) {
             log.info("Получение списка фильмов по режиссеру. Запрос - {}", query);
-            return jdbcTemplate.query(SQL_SEARCH_DIRECTOR, this::mapRowToFilm, "%" + query + "%");
+            return filmHydrator.findByIds(filmSearchIndex.searchByDirector(query));
         }
         if (list.contains("title") && list.size() == 1) {
             log.info("Получение списка фильмов по наименованию. Запрос - {}", query);
-            return jdbcTemplate.query(SQL_SEARCH_TITLE, this::mapRowToFilm, "%" + query + "%");
+            return filmHydrator.findByIds(filmSearchIndex.searchByTitle(query));
         }
         log.warn("Попытка получения списка фильмов по {}", by);
         throw new FunctionalityNotSupportedException("Функциональность не поддерживается");
     }
 
+    @Override
+    public Collection<Suggestion> suggest(String prefix, int count) {
+        return filmSearchIndex.suggest(prefix, count);
+    }
 
     public Collection<Film> findFilmsByDirectorId(Integer directorId) {
-        var filmAsRowSet = jdbcTemplate.queryForRowSet(SQL_FIND_ALL_FILMS_BY_DIRECTOR_ID, directorId);
-        List<Film> films = new ArrayList<>();
-        while (filmAsRowSet.next()) {
-            films.add(getFilmById(filmAsRowSet.getInt("id")).orElseThrow());
-        }
-        return films;
+        return filmHydrator.query(SQL_FIND_ALL_FILMS_BY_DIRECTOR_ID, directorId);
     }
 
-    @Override      
+    @Override
     public Collection<Film> getCommonFilmsBetweenTwoUsers(Integer userId, Integer friendId) {
-        var filmsAsRowSet = jdbcTemplate.queryForRowSet(SQL_SELECT_COMMON_FILMS_IDS_BETWEEN_TWO_USERS, userId, friendId);
-        List<Film> films = new ArrayList<>();
-        while (filmsAsRowSet.next()) {
-            films.add(getFilmById(filmsAsRowSet.getInt("film_id")).orElseThrow());
-        }
-        return films;
-
+        List<Integer> filmIds = Arrays.stream(likesMatrix.getCommonFilms(userId, friendId))
+                .boxed()
+                .sorted(Comparator.comparingInt((Integer id) -> leaderboard.getLikesCount(id)).reversed()
+                        .thenComparingInt(id -> id))
+                .collect(Collectors.toList());
+        return filmHydrator.findByIds(filmIds);
     }
 
-    private Film mapRowToFilm(ResultSet resultSet, int rowNum) throws SQLException {
-        Film film =  Film.builder()
-                .id(resultSet.getInt("id"))
-                .rate(resultSet.getInt("rate"))
-                .name(resultSet.getString("name"))
-                .description(resultSet.getString("description"))
-                .releaseDate(resultSet.getDate("release_date").toLocalDate())
-                .duration(Duration.ofSeconds(resultSet.getInt("duration")))
-                .mpa(mpaDbStorage.getMpaById(resultSet.getInt("mpa")).get())
-                .director(directorDbStorage.findDirectorById(resultSet.getInt("director_id")).orElse(null))
-                .build();
-
-        SqlRowSet likesAsRowSet = jdbcTemplate.queryForRowSet(SQL_FIND_ALL_LIKES, film.getId());
-        Set<Integer> likes = new HashSet<>();
-        while (likesAsRowSet.next()) {
-            Integer likeId = likesAsRowSet.getInt("user_id");
-
-            likes.add(likeId);
-        }
-        film.setLikes(likes);
-        return film;
+    private static Integer getDirectorId(Film film) {
+        return film.getDirector() != null ? film.getDirector().getId() : null;
     }
 }
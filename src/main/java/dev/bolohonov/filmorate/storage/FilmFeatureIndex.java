@@ -0,0 +1,199 @@
+package dev.bolohonov.filmorate.storage;
+
+import dev.bolohonov.filmorate.model.Film;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Признаки фильмов для контентной близости: mpa, режиссер, жанры (битовая маска), год выпуска
+ * и длительность в примитивных массивах по id фильма. Поиск ближайших - линейный проход по массивам,
+ * работает и для фильмов без лайков.
+ */
+@Slf4j
+@Component
+public class FilmFeatureIndex {
+    private static final String SQL_SELECT_FEATURES =
+            "select f.id, f.mpa, f.director_id, f.release_year, f.duration, fg.genre_id " +
+                    "from film f left join film_genre fg on fg.film_id = f.id";
+    private static final String SQL_SELECT_GENRES_OF_FILM =
+            "select genre_id from film_genre where film_id = ?";
+    private static final int MAX_SOURCE_FILMS = 100;
+    private static final float GENRE_WEIGHT = 3f;
+    private static final float DIRECTOR_WEIGHT = 2f;
+    private static final float MPA_WEIGHT = 1f;
+    private static final float YEAR_WEIGHT = 1f;
+    private static final float DURATION_WEIGHT = 0.5f;
+    private static final float YEAR_SCALE = 20f;
+    private static final float DURATION_SCALE = 3600f;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private BitSet films = new BitSet();
+    private int[] mpas = new int[0];
+    private int[] directors = new int[0];
+    private long[] genres = new long[0];
+    private int[] years = new int[0];
+    private int[] durations = new int[0];
+
+    public FilmFeatureIndex(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            films = new BitSet();
+            mpas = new int[0];
+            directors = new int[0];
+            genres = new long[0];
+            years = new int[0];
+            durations = new int[0];
+            jdbcTemplate.query(SQL_SELECT_FEATURES, rs -> {
+                int filmId = rs.getInt("id");
+                if (!films.get(filmId)) {
+                    putLocked(filmId, rs.getInt("mpa"), rs.getInt("director_id"), 0L,
+                            rs.getInt("release_year"), rs.getInt("duration"));
+                }
+                genres[filmId] |= genreBit(rs.getInt("genre_id"));
+            });
+            log.info("Индекс признаков построен для {} фильмов", films.cardinality());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void putFilm(Film film) {
+        long genreMask = 0L;
+        for (Integer genreId : jdbcTemplate.queryForList(SQL_SELECT_GENRES_OF_FILM, Integer.class, film.getId())) {
+            genreMask |= genreBit(genreId);
+        }
+        lock.writeLock().lock();
+        try {
+            putLocked(film.getId(),
+                    film.getMpa() != null ? film.getMpa().getId() : 0,
+                    film.getDirector() != null ? film.getDirector().getId() : 0,
+                    genreMask,
+                    film.getReleaseDate().getYear(),
+                    (int) film.getDuration().toSeconds());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeFilm(int filmId) {
+        lock.writeLock().lock();
+        try {
+            films.clear(filmId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ближайшие по признакам фильмы, кроме исключенных, по убыванию близости, при равенстве по id.
+     */
+    public List<Integer> getSimilar(int filmId, int count, Set<Integer> excluded) {
+        return nearest(new int[]{filmId}, count, excluded);
+    }
+
+    /**
+     * Фильмы, наиболее близкие к любому из исходных; близость кандидата - максимум по исходным фильмам.
+     */
+    public List<Integer> nearest(int[] sourceFilms, int count, Set<Integer> excluded) {
+        lock.readLock().lock();
+        try {
+            int[] sources = Arrays.stream(sourceFilms)
+                    .filter(films::get)
+                    .limit(MAX_SOURCE_FILMS)
+                    .toArray();
+            if (sources.length == 0 || count <= 0) {
+                return new ArrayList<>();
+            }
+            Set<Integer> skip = new HashSet<>(excluded);
+            Arrays.stream(sources).forEach(skip::add);
+            int[] topFilms = new int[count];
+            float[] topScores = new float[count];
+            int size = 0;
+            for (int candidate = films.nextSetBit(0); candidate >= 0; candidate = films.nextSetBit(candidate + 1)) {
+                if (skip.contains(candidate)) {
+                    continue;
+                }
+                float score = 0;
+                for (int source : sources) {
+                    score = Math.max(score, similarity(source, candidate));
+                }
+                if (size == count && score <= topScores[size - 1]) {
+                    continue;
+                }
+                int i = size == count ? size - 1 : size++;
+                while (i > 0 && topScores[i - 1] < score) {
+                    topScores[i] = topScores[i - 1];
+                    topFilms[i] = topFilms[i - 1];
+                    i--;
+                }
+                topScores[i] = score;
+                topFilms[i] = candidate;
+            }
+            List<Integer> result = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                result.add(topFilms[i]);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private float similarity(int a, int b) {
+        float score = 0;
+        long union = genres[a] | genres[b];
+        if (union != 0) {
+            score += GENRE_WEIGHT * Long.bitCount(genres[a] & genres[b]) / Long.bitCount(union);
+        }
+        if (directors[a] != 0 && directors[a] == directors[b]) {
+            score += DIRECTOR_WEIGHT;
+        }
+        if (mpas[a] == mpas[b]) {
+            score += MPA_WEIGHT;
+        }
+        score += YEAR_WEIGHT * Math.max(0f, 1f - Math.abs(years[a] - years[b]) / YEAR_SCALE);
+        score += DURATION_WEIGHT * Math.max(0f, 1f - Math.abs(durations[a] - durations[b]) / DURATION_SCALE);
+        return score;
+    }
+
+    private void putLocked(int filmId, int mpa, int director, long genreMask, int year, int duration) {
+        ensureCapacity(filmId);
+        films.set(filmId);
+        mpas[filmId] = mpa;
+        directors[filmId] = director;
+        genres[filmId] = genreMask;
+        years[filmId] = year;
+        durations[filmId] = duration;
+    }
+
+    /**
+     * Жанры с id вне диапазона 1..63 в маску не попадают.
+     */
+    private static long genreBit(int genreId) {
+        return genreId > 0 && genreId < Long.SIZE ? 1L << genreId : 0L;
+    }
+
+    private void ensureCapacity(int filmId) {
+        if (filmId < mpas.length) {
+            return;
+        }
+        int capacity = Math.max(filmId + 1, mpas.length * 2);
+        mpas = Arrays.copyOf(mpas, capacity);
+        directors = Arrays.copyOf(directors, capacity);
+        genres = Arrays.copyOf(genres, capacity);
+        years = Arrays.copyOf(years, capacity);
+        durations = Arrays.copyOf(durations, capacity);
+    }
+}
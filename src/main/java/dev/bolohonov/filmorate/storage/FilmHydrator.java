@@ -0,0 +1,145 @@
+package dev.bolohonov.filmorate.storage;
+
+import dev.bolohonov.filmorate.model.Director;
+import dev.bolohonov.filmorate.model.Film;
+import dev.bolohonov.filmorate.model.Mpa;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Собирает фильмы пакетно: сначала базовые строки film, затем mpa, режиссеры и лайки
+ * для всего набора id одним IN-запросом на каждую связь.
+ */
+@Slf4j
+@Component
+public class FilmHydrator {
+    private static final int BATCH_SIZE = 1000;
+
+    private static final String SQL_SELECT_MPA_BY_IDS =
+            "select id, name from mpa where id in (:ids)";
+    private static final String SQL_SELECT_DIRECTORS_BY_IDS =
+            "select id, name from director where id in (:ids)";
+    private static final String SQL_SELECT_LIKES_BY_FILM_IDS =
+            "select film_id, array_agg(user_id) as user_ids from likes where film_id in (:ids) group by film_id";
+    private static final String SQL_SELECT_FILMS_BY_IDS =
+            "select id, rate, name, description, release_date, duration, mpa, director_id " +
+                    "from film where id in (:ids)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    public FilmHydrator(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedParameterJdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
+    }
+
+    public List<Film> query(String sql, Object... args) {
+        return hydrate(jdbcTemplate.query(sql, this::mapRowToFilm, args));
+    }
+
+    /**
+     * Возвращает фильмы в порядке переданных id; отсутствующие в базе id пропускаются.
+     */
+    public List<Film> findByIds(Collection<Integer> ids) {
+        Map<Integer, Film> filmsById = new HashMap<>();
+        queryByIds(SQL_SELECT_FILMS_BY_IDS, ids, rs -> {
+            Film film = mapRowToFilm(rs, 0);
+            filmsById.put(film.getId(), film);
+        });
+        List<Film> films = new ArrayList<>(filmsById.size());
+        for (Integer id : ids) {
+            Film film = filmsById.get(id);
+            if (film != null) {
+                films.add(film);
+            }
+        }
+        return hydrate(films);
+    }
+
+    public List<Film> hydrate(List<Film> films) {
+        if (films.isEmpty()) {
+            return films;
+        }
+        Set<Integer> filmIds = new LinkedHashSet<>();
+        Set<Integer> mpaIds = new HashSet<>();
+        Set<Integer> directorIds = new HashSet<>();
+        for (Film film : films) {
+            filmIds.add(film.getId());
+            if (film.getMpa() != null) {
+                mpaIds.add(film.getMpa().getId());
+            }
+            if (film.getDirector() != null) {
+                directorIds.add(film.getDirector().getId());
+            }
+        }
+
+        Map<Integer, Mpa> mpas = new HashMap<>();
+        queryByIds(SQL_SELECT_MPA_BY_IDS, mpaIds, rs ->
+                mpas.put(rs.getInt("id"), new Mpa(rs.getInt("id"), rs.getString("name"))));
+        Map<Integer, Director> directors = new HashMap<>();
+        queryByIds(SQL_SELECT_DIRECTORS_BY_IDS, directorIds, rs ->
+                directors.put(rs.getInt("id"), Director.builder()
+                        .id(rs.getInt("id"))
+                        .name(rs.getString("name"))
+                        .build()));
+        Map<Integer, Set<Integer>> likes = new HashMap<>();
+        queryByIds(SQL_SELECT_LIKES_BY_FILM_IDS, filmIds, rs -> {
+            Set<Integer> userIds = new HashSet<>();
+            for (Object userId : (Object[]) rs.getArray("user_ids").getArray()) {
+                userIds.add(((Number) userId).intValue());
+            }
+            likes.put(rs.getInt("film_id"), userIds);
+        });
+
+        for (Film film : films) {
+            if (film.getMpa() != null) {
+                film.setMpa(mpas.getOrDefault(film.getMpa().getId(), film.getMpa()));
+            }
+            if (film.getDirector() != null) {
+                film.setDirector(directors.get(film.getDirector().getId()));
+            }
+            film.setLikes(likes.getOrDefault(film.getId(), new HashSet<>()));
+        }
+        log.debug("Собрано {} фильмов", films.size());
+        return films;
+    }
+
+    /**
+     * Маппит только колонки таблицы film; mpa и режиссер остаются заглушками с id до вызова hydrate.
+     */
+    public Film mapRowToFilm(ResultSet resultSet, int rowNum) throws SQLException {
+        int directorId = resultSet.getInt("director_id");
+        boolean hasDirector = !resultSet.wasNull();
+        return Film.builder()
+                .id(resultSet.getInt("id"))
+                .rate(resultSet.getInt("rate"))
+                .name(resultSet.getString("name"))
+                .description(resultSet.getString("description"))
+                .releaseDate(resultSet.getDate("release_date").toLocalDate())
+                .duration(Duration.ofSeconds(resultSet.getInt("duration")))
+                .mpa(new Mpa(resultSet.getInt("mpa"), null))
+                .director(hasDirector ? Director.builder().id(directorId).build() : null)
+                .likes(new HashSet<>())
+                .build();
+    }
+
+    private void queryByIds(String sql, Collection<Integer> ids, RowCallbackHandler handler) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        List<Integer> idList = new ArrayList<>(new LinkedHashSet<>(ids));
+        for (int from = 0; from < idList.size(); from += BATCH_SIZE) {
+            List<Integer> batch = idList.subList(from, Math.min(from + BATCH_SIZE, idList.size()));
+            namedParameterJdbcTemplate.query(sql, new MapSqlParameterSource("ids", batch), handler);
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package dev.bolohonov.filmorate.storage;
+
+import dev.bolohonov.filmorate.enums.SuggestionType;
+import dev.bolohonov.filmorate.model.Suggestion;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * Поисковый индекс по названиям фильмов и именам режиссеров в памяти.
+ * Результат упорядочен по числу лайков из {@link PopularityLeaderboard}, при равенстве по id.
+ * Подсказки по префиксу ранжируются так же; вес режиссера равен сумме лайков его фильмов.
+ * Изменения лайков приходят из {@link PopularityLeaderboard} и применяются под блокировкой чтения,
+ * параллельно с поиском: счетчик режиссера меняется на разницу с последним учтенным числом лайков фильма,
+ * топы префиксного дерева сбрасываются только на путях фильма и режиссера.
+ */
+@Slf4j
+@Component
+public class FilmSearchIndex {
+    private static final String SQL_SELECT_FILMS = "select id, name, director_id from film";
+    private static final String SQL_SELECT_DIRECTORS = "select id, name from director";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PopularityLeaderboard leaderboard;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TrigramIndex titles = new TrigramIndex();
+    private final TrigramIndex directors = new TrigramIndex();
+    private final PrefixIndex titlePrefixes;
+    private final PrefixIndex directorPrefixes;
+    private final Map<Integer, String> filmNames = new HashMap<>();
+    private final Map<Integer, String> directorNames = new HashMap<>();
+    private final Map<Integer, Integer> directorByFilm = new HashMap<>();
+    private final Map<Integer, Set<Integer>> filmsByDirector = new HashMap<>();
+    private final Map<Integer, Integer> filmLikes = new ConcurrentHashMap<>();
+    private final Map<Integer, Integer> directorLikes = new ConcurrentHashMap<>();
+
+    public FilmSearchIndex(JdbcTemplate jdbcTemplate, PopularityLeaderboard leaderboard) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.leaderboard = leaderboard;
+        this.titlePrefixes = new PrefixIndex(leaderboard::getLikesCount, filmNames::get);
+        this.directorPrefixes = new PrefixIndex(id -> directorLikes.getOrDefault(id, 0), directorNames::get);
+        leaderboard.addListener(this::likesChanged);
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            jdbcTemplate.query(SQL_SELECT_DIRECTORS, rs -> {
+                putDirectorLocked(rs.getInt("id"), rs.getString("name"));
+            });
+            jdbcTemplate.query(SQL_SELECT_FILMS, rs -> {
+                int directorId = rs.getInt("director_id");
+                boolean hasDirector = !rs.wasNull();
+                putFilmLocked(rs.getInt("id"), rs.getString("name"), hasDirector ? directorId : null);
+            });
+            log.info("Поисковый индекс построен для {} фильмов", directorByFilm.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void putFilm(int filmId, String name, Integer directorId) {
+        lock.writeLock().lock();
+        try {
+            putFilmLocked(filmId, name, directorId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeFilm(int filmId) {
+        lock.writeLock().lock();
+        try {
+            titles.remove(filmId);
+            titlePrefixes.remove(filmId);
+            filmNames.remove(filmId);
+            unlinkDirector(filmId);
+            directorByFilm.remove(filmId);
+            filmLikes.remove(filmId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void putDirector(int directorId, String name) {
+        lock.writeLock().lock();
+        try {
+            putDirectorLocked(directorId, name);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeDirector(int directorId) {
+        lock.writeLock().lock();
+        try {
+            directors.remove(directorId);
+            directorPrefixes.remove(directorId);
+            directorNames.remove(directorId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Структура индекса под блокировкой чтения не меняется, поэтому связь фильма с режиссером стабильна;
+     * разница считается внутри compute, так что параллельные вызовы по одному фильму не теряют изменений.
+     */
+    public void likesChanged(int filmId) {
+        lock.readLock().lock();
+        try {
+            if (!filmNames.containsKey(filmId)) {
+                return;
+            }
+            Integer directorId = directorByFilm.get(filmId);
+            filmLikes.compute(filmId, (id, counted) -> {
+                int likes = leaderboard.getLikesCount(filmId);
+                if (directorId != null) {
+                    addDirectorLikes(directorId, likes - (counted == null ? 0 : counted));
+                }
+                return likes;
+            });
+            titlePrefixes.touch(filmId);
+            if (directorId != null) {
+                directorPrefixes.touch(directorId);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Integer> searchByTitle(String query) {
+        lock.readLock().lock();
+        try {
+            return rank(titles.find(query));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Integer> searchByDirector(String query) {
+        lock.readLock().lock();
+        try {
+            return rank(findByDirector(query));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Integer> searchByTitleAndDirector(String query) {
+        lock.readLock().lock();
+        try {
+            Set<Integer> byDirector = findByDirector(query);
+            return rank(titles.find(query).stream()
+                    .filter(byDirector::contains)
+                    .collect(Collectors.toSet()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Suggestion> suggest(String prefix, int count) {
+        List<Suggestion> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (Integer filmId : titlePrefixes.top(prefix, count)) {
+                result.add(new Suggestion(SuggestionType.FILM, filmId, filmNames.get(filmId),
+                        leaderboard.getLikesCount(filmId)));
+            }
+            for (Integer directorId : directorPrefixes.top(prefix, count)) {
+                result.add(new Suggestion(SuggestionType.DIRECTOR, directorId, directorNames.get(directorId),
+                        directorLikes.getOrDefault(directorId, 0)));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        result.sort(Comparator.comparingInt(Suggestion::getLikes).reversed()
+                .thenComparing(Suggestion::getName)
+                .thenComparing(Suggestion::getType)
+                .thenComparingInt(Suggestion::getId));
+        return result.size() > count ? result.subList(0, count) : result;
+    }
+
+    private Set<Integer> findByDirector(String query) {
+        Set<Integer> films = new HashSet<>();
+        for (Integer directorId : directors.find(query)) {
+            films.addAll(filmsByDirector.getOrDefault(directorId, Collections.emptySet()));
+        }
+        return films;
+    }
+
+    private List<Integer> rank(Set<Integer> filmIds) {
+        return filmIds.stream()
+                .sorted(Comparator.comparingInt((Integer id) -> leaderboard.getLikesCount(id)).reversed()
+                        .thenComparingInt(id -> id))
+                .collect(Collectors.toList());
+    }
+
+    private void putDirectorLocked(int directorId, String name) {
+        directors.put(directorId, name);
+        directorPrefixes.put(directorId, name);
+        directorNames.put(directorId, name);
+    }
+
+    private void putFilmLocked(int filmId, String name, Integer directorId) {
+        titles.put(filmId, name);
+        titlePrefixes.put(filmId, name);
+        filmNames.put(filmId, name);
+        unlinkDirector(filmId);
+        int likes = leaderboard.getLikesCount(filmId);
+        filmLikes.put(filmId, likes);
+        directorByFilm.put(filmId, directorId);
+        if (directorId != null) {
+            filmsByDirector.computeIfAbsent(directorId, id -> new HashSet<>()).add(filmId);
+            addDirectorLikes(directorId, likes);
+            directorPrefixes.touch(directorId);
+        }
+    }
+
+    private void addDirectorLikes(int directorId, int delta) {
+        if (delta != 0) {
+            directorLikes.merge(directorId, delta, (likes, change) -> likes + change == 0 ? null : likes + change);
+        }
+    }
+
+    private void unlinkDirector(int filmId) {
+        Integer oldDirectorId = directorByFilm.get(filmId);
+        if (oldDirectorId != null) {
+            Set<Integer> films = filmsByDirector.get(oldDirectorId);
+            films.remove(filmId);
+            if (films.isEmpty()) {
+                filmsByDirector.remove(oldDirectorId);
+            }
+            addDirectorLikes(oldDirectorId, -filmLikes.getOrDefault(filmId, 0));
+            directorPrefixes.touch(oldDirectorId);
+        }
+    }
+}
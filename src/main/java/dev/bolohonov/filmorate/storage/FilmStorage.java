@@ -1,13 +1,20 @@
 package dev.bolohonov.filmorate.storage;
 
 import dev.bolohonov.filmorate.model.Film;
+import dev.bolohonov.filmorate.model.Suggestion;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface FilmStorage {
     Collection<Film> getFilms();
 
+    void streamFilms(Consumer<Film> consumer);
+
+    List<Film> getFilmsPage(int afterId, int limit);
+
     Film addFilm(Film film);
 
     void deleteFilm(Integer id);
@@ -18,6 +25,8 @@ public interface FilmStorage {
 
     Collection<Film> search(String query, String by);
 
+    Collection<Suggestion> suggest(String prefix, int count);
+
     Collection<Film> findFilmsByDirectorId(Integer directorId);
 
     Collection<Film> getCommonFilmsBetweenTwoUsers(Integer userId, Integer friendId);
@@ -0,0 +1,396 @@
+package dev.bolohonov.filmorate.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Граф дружбы в памяти. Для каждого пользователя хранятся отсортированные массивы id:
+ * кого он добавил в друзья и кто добавил его. Массив при изменении заменяется новым,
+ * поэтому возвращенные наружу массивы можно читать без блокировки, но нельзя изменять.
+ * Рекомендации друзей кешируются по пользователю и сбрасываются при изменении его друзей
+ * или друзей его друзей.
+ */
+@Slf4j
+@Component
+public class FriendGraph {
+    private static final int[] EMPTY = new int[0];
+    private static final String SQL_SELECT_FRIENDS =
+            "select first_user_id, second_user_id, accept_first, accept_second from friends";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, int[]> friends = new HashMap<>();
+    private final Map<Integer, int[]> followers = new HashMap<>();
+    private final Map<Integer, Suggestions> suggestions;
+    private final int maxExpansion;
+
+    public FriendGraph(JdbcTemplate jdbcTemplate,
+                       @Value("${filmorate.friends.suggestions.max-expansion:100000}") int maxExpansion,
+                       @Value("${filmorate.friends.suggestions.cache-size:10000}") int cacheSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxExpansion = maxExpansion;
+        this.suggestions = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Suggestions> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        EdgeBuffer edges = new EdgeBuffer();
+        jdbcTemplate.query(SQL_SELECT_FRIENDS, rs -> {
+            int first = rs.getInt("first_user_id");
+            int second = rs.getInt("second_user_id");
+            if (rs.getBoolean("accept_first")) {
+                edges.add(first, second);
+            }
+            if (rs.getBoolean("accept_second")) {
+                edges.add(second, first);
+            }
+        });
+        lock.writeLock().lock();
+        try {
+            friends.clear();
+            followers.clear();
+            suggestions.clear();
+            edges.groupInto(friends, false);
+            edges.groupInto(followers, true);
+            log.info("Граф дружбы построен: {} связей", edges.size);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * userId считает friendId другом.
+     */
+    public void add(int userId, int friendId) {
+        lock.writeLock().lock();
+        try {
+            invalidateSuggestions(userId);
+            friends.put(userId, insert(friends.get(userId), friendId));
+            followers.put(friendId, insert(followers.get(friendId), userId));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int userId, int friendId) {
+        lock.writeLock().lock();
+        try {
+            invalidateSuggestions(userId);
+            removeLocked(friends, userId, friendId);
+            removeLocked(followers, friendId, userId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeUser(int userId) {
+        lock.writeLock().lock();
+        try {
+            suggestions.clear();
+            int[] userFriends = friends.remove(userId);
+            if (userFriends != null) {
+                for (int friendId : userFriends) {
+                    removeLocked(followers, friendId, userId);
+                }
+            }
+            int[] userFollowers = followers.remove(userId);
+            if (userFollowers != null) {
+                for (int followerId : userFollowers) {
+                    removeLocked(friends, followerId, userId);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isFriend(int userId, int friendId) {
+        return Arrays.binarySearch(getFriends(userId), friendId) >= 0;
+    }
+
+    /**
+     * Отсортированные по возрастанию id друзей пользователя; массив только для чтения.
+     */
+    public int[] getFriends(int userId) {
+        lock.readLock().lock();
+        try {
+            return friends.getOrDefault(userId, EMPTY);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Общие друзья двух пользователей в порядке возрастания id.
+     */
+    public int[] getCommonFriends(int userId, int otherId) {
+        return intersect(getFriends(userId), getFriends(otherId));
+    }
+
+    /**
+     * Пересечение отсортированных массивов: меньший проходится линейно, позиция в большем ищется
+     * галопом (шаги 1, 2, 4, ... и бинарный поиск в найденном окне), что дает O(m log(n / m)).
+     */
+    static int[] intersect(int[] first, int[] second) {
+        int[] small = first.length <= second.length ? first : second;
+        int[] large = small == first ? second : first;
+        int[] result = new int[small.length];
+        int size = 0;
+        int from = 0;
+        for (int value : small) {
+            from = gallop(large, from, value);
+            if (from == large.length) {
+                break;
+            }
+            if (large[from] == value) {
+                result[size++] = value;
+                from++;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * Первая позиция не раньше from, где значение не меньше value, или длина массива.
+     */
+    private static int gallop(int[] ids, int from, int value) {
+        if (from >= ids.length || ids[from] >= value) {
+            return from;
+        }
+        int low = from;
+        int high = from + 1;
+        int step = 1;
+        while (high < ids.length && ids[high] < value) {
+            low = high;
+            step <<= 1;
+            high = low + step;
+        }
+        int pos = Arrays.binarySearch(ids, low + 1, Math.min(high, ids.length), value);
+        return pos >= 0 ? pos : -pos - 1;
+    }
+
+    /**
+     * До count пользователей, которые не являются друзьями userId, по убыванию числа общих друзей,
+     * при равенстве по возрастанию id. Обход второго уровня ограничен maxExpansion ребрами,
+     * сверх этого предела счетчики приблизительные.
+     */
+    public int[] getSuggestions(int userId, int count) {
+        lock.readLock().lock();
+        try {
+            Suggestions cached = suggestions.get(userId);
+            if (cached != null && (cached.count >= count || cached.ids.length < cached.count)) {
+                return Arrays.copyOf(cached.ids, Math.min(count, cached.ids.length));
+            }
+            int[] ids = suggestLocked(userId, count);
+            suggestions.put(userId, new Suggestions(ids, count));
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Длина кратчайшей цепочки друзей от userId до otherId или -1, если она длиннее maxDistance.
+     * Двунаправленный BFS: прямой фронт идет по друзьям, обратный по подписчикам, на каждом шаге
+     * расширяется меньший фронт; посещенные вершины хранятся в битовых множествах.
+     */
+    public int getDistance(int userId, int otherId, int maxDistance) {
+        if (userId == otherId) {
+            return 0;
+        }
+        lock.readLock().lock();
+        try {
+            RoaringBitmap forwardVisited = RoaringBitmap.bitmapOf(userId);
+            RoaringBitmap backwardVisited = RoaringBitmap.bitmapOf(otherId);
+            int[] forward = {userId};
+            int[] backward = {otherId};
+            int depth = 0;
+            while (depth < maxDistance && forward.length > 0 && backward.length > 0) {
+                depth++;
+                boolean expandForward = forward.length <= backward.length;
+                int[] next = expandForward
+                        ? expand(forward, friends, forwardVisited, backwardVisited)
+                        : expand(backward, followers, backwardVisited, forwardVisited);
+                if (next == null) {
+                    return depth;
+                }
+                if (expandForward) {
+                    forward = next;
+                } else {
+                    backward = next;
+                }
+            }
+            return -1;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Следующий уровень фронта или null, если он пересекся с посещенными вершинами другой стороны.
+     */
+    private static int[] expand(int[] frontier, Map<Integer, int[]> adjacency, RoaringBitmap visited,
+                                RoaringBitmap otherVisited) {
+        int[] next = new int[Math.max(16, frontier.length)];
+        int size = 0;
+        for (int userId : frontier) {
+            for (int neighbourId : adjacency.getOrDefault(userId, EMPTY)) {
+                if (otherVisited.contains(neighbourId)) {
+                    return null;
+                }
+                if (visited.checkedAdd(neighbourId)) {
+                    if (size == next.length) {
+                        next = Arrays.copyOf(next, size * 2);
+                    }
+                    next[size++] = neighbourId;
+                }
+            }
+        }
+        return Arrays.copyOf(next, size);
+    }
+
+    private int[] suggestLocked(int userId, int count) {
+        int[] userFriends = friends.getOrDefault(userId, EMPTY);
+        IntCounter mutual = new IntCounter(Math.min(maxExpansion, 1024));
+        int budget = maxExpansion;
+        for (int i = 0; i < userFriends.length && budget > 0; i++) {
+            int[] candidates = friends.getOrDefault(userFriends[i], EMPTY);
+            int limit = Math.min(candidates.length, budget);
+            budget -= limit;
+            for (int j = 0; j < limit; j++) {
+                int candidate = candidates[j];
+                if (candidate != userId && Arrays.binarySearch(userFriends, candidate) < 0) {
+                    mutual.increment(candidate);
+                }
+            }
+        }
+        LongTopK top = new LongTopK(count);
+        for (int slot = 0; slot < mutual.capacity(); slot++) {
+            if (mutual.countAt(slot) != 0) {
+                long rank = (long) (Integer.MAX_VALUE - mutual.countAt(slot)) << 32;
+                top.offer(rank | (mutual.keyAt(slot) & 0xffffffffL));
+            }
+        }
+        long[] ranked = top.toSortedArray();
+        int[] ids = new int[ranked.length];
+        for (int i = 0; i < ranked.length; i++) {
+            ids[i] = (int) ranked[i];
+        }
+        return ids;
+    }
+
+    /**
+     * Ребро userId -> friendId меняет счетчики самого userId и всех, у кого userId в друзьях.
+     */
+    private void invalidateSuggestions(int userId) {
+        suggestions.remove(userId);
+        for (int followerId : followers.getOrDefault(userId, EMPTY)) {
+            suggestions.remove(followerId);
+        }
+    }
+
+    private static void removeLocked(Map<Integer, int[]> adjacency, int userId, int otherId) {
+        int[] ids = adjacency.get(userId);
+        if (ids == null) {
+            return;
+        }
+        int[] updated = delete(ids, otherId);
+        if (updated.length == 0) {
+            adjacency.remove(userId);
+        } else {
+            adjacency.put(userId, updated);
+        }
+    }
+
+    private static int[] insert(int[] ids, int id) {
+        if (ids == null) {
+            return new int[]{id};
+        }
+        int pos = Arrays.binarySearch(ids, id);
+        if (pos >= 0) {
+            return ids;
+        }
+        pos = -pos - 1;
+        int[] result = new int[ids.length + 1];
+        System.arraycopy(ids, 0, result, 0, pos);
+        result[pos] = id;
+        System.arraycopy(ids, pos, result, pos + 1, ids.length - pos);
+        return result;
+    }
+
+    private static int[] delete(int[] ids, int id) {
+        int pos = Arrays.binarySearch(ids, id);
+        if (pos < 0) {
+            return ids;
+        }
+        int[] result = new int[ids.length - 1];
+        System.arraycopy(ids, 0, result, 0, pos);
+        System.arraycopy(ids, pos + 1, result, pos, ids.length - pos - 1);
+        return result;
+    }
+
+    private static final class Suggestions {
+        private final int[] ids;
+        private final int count;
+
+        private Suggestions(int[] ids, int count) {
+            this.ids = ids;
+            this.count = count;
+        }
+    }
+
+    /**
+     * Ребра, упакованные в long (старшие 32 бита — пользователь, младшие — друг),
+     * чтобы построить все массивы одной сортировкой без промежуточных коллекций.
+     */
+    private static final class EdgeBuffer {
+        private long[] edges = new long[1024];
+        private int size;
+
+        void add(int userId, int friendId) {
+            if (size == edges.length) {
+                edges = Arrays.copyOf(edges, size * 2);
+            }
+            edges[size++] = pack(userId, friendId);
+        }
+
+        void groupInto(Map<Integer, int[]> adjacency, boolean reversed) {
+            long[] sorted = new long[size];
+            for (int i = 0; i < size; i++) {
+                sorted[i] = reversed ? pack((int) edges[i], (int) (edges[i] >>> 32)) : edges[i];
+            }
+            Arrays.sort(sorted);
+            int from = 0;
+            while (from < size) {
+                int userId = (int) (sorted[from] >>> 32);
+                int to = from;
+                while (to < size && (int) (sorted[to] >>> 32) == userId) {
+                    to++;
+                }
+                int[] ids = new int[to - from];
+                for (int i = from; i < to; i++) {
+                    ids[i - from] = (int) sorted[i];
+                }
+                adjacency.put(userId, ids);
+                from = to;
+            }
+        }
+
+        private static long pack(int userId, int friendId) {
+            return ((long) userId << 32) | (friendId & 0xffffffffL);
+        }
+    }
+}
@@ -3,200 +3,125 @@ package dev.bolohonov.filmorate.storage;
 import dev.bolohonov.filmorate.model.User;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Component;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.Collection;
-import java.util.stream.Collectors;
+import java.util.*;
 
 @Slf4j
 @Component
 public class FriendsDbStorage implements FriendsStorage {
+    private static final int BATCH_SIZE = 1000;
+
     private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final FriendGraph friendGraph;
     private static final String SQL_INSERT =
             "insert into friends (first_user_id, second_user_id, accept_first, accept_second) " +
                     "values (?, ?, ?, ?)";
-    private static final String SQL_UPDATE =
-            "update friends set first_user_id = ?, second_user_id = ?, " +
-                    "accept_first = ?, accept_second = ?";
-    private static final String SQL_DELETE =
-            "delete from friends where first_user_id = ? and second_user_id =?";
-    private static final String SQL_FIRST_QUERY_FOR_USER_FRIENDS =
-            "select u.*" +
-            "from (select second_user_id " +
-            "from friends as fr " +
-            "where fr.first_user_id = ? and fr.accept_first = true) " +
-            "left join user_filmorate as u on u.id = second_user_id";
-    private static final String SQL_SECOND_QUERY_FOR_USER_FRIENDS =
-            "select u.*" +
-            "from (select first_user_id " +
-            "from friends as fr " +
-            "where fr.second_user_id = ? and fr.accept_second = true) " +
-            "left join user_filmorate as u on u.id = first_user_id";
-    private static final String SQL_SELECT_ACCEPT_FIRST =
-            "select accept_first from friends where first_user_id = ? and second_user_id = ?";
-    private static final String SQL_SELECT_ACCEPT_SECOND =
-            "select accept_second from friends where first_user_id = ? and second_user_id = ?";
-    private static final String SQL_SELECT_FIRST_USER =
-    "select first_user_id from friends where first_user_id = ? and second_user_id = ?";
+    private static final String SQL_ACCEPT =
+            "update friends set accept_first = accept_first or ?, accept_second = accept_second or ? " +
+                    "where first_user_id = ? and second_user_id = ?";
+    private static final String SQL_RETRACT =
+            "update friends set accept_first = accept_first and ?, accept_second = accept_second and ? " +
+                    "where first_user_id = ? and second_user_id = ?";
+    private static final String SQL_DELETE_RETRACTED =
+            "delete from friends where first_user_id = ? and second_user_id = ? " +
+                    "and not accept_first and not accept_second";
+    private static final String SQL_SELECT_USERS_BY_IDS =
+            "select id, name, login, email, birthday from user_filmorate where id in (:ids)";
 
-    public FriendsDbStorage(JdbcTemplate jdbcTemplate) {
+    public FriendsDbStorage(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedParameterJdbcTemplate,
+                            FriendGraph friendGraph) {
         this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
+        this.friendGraph = friendGraph;
     }
 
-    public boolean addToFriends(Integer firstUserId, Integer secondUserId) {
-        Boolean result = false;
-        String flag = "FirstIsFirst";
-        if (firstUserId > secondUserId) {
-            Integer idLarge = firstUserId;
-            firstUserId = secondUserId;
-            secondUserId = idLarge;
-            flag = "FirstIsSecond";
-        }
-        String sqlInsert = SQL_INSERT;
-        String sqlUpdate = SQL_UPDATE;
-        switch (flag) {
-            case ("FirstIsFirst"):
-                if (!isRequestToFriendExist(firstUserId, secondUserId)) {
-                    jdbcTemplate.update(sqlInsert,
-                            firstUserId,
-                            secondUserId,
-                            Boolean.TRUE,
-                            Boolean.FALSE);
-                    return false;
-                } else {
-                    if (isAcceptTrueSecondUser(firstUserId, secondUserId)) {
-                        jdbcTemplate.update(sqlUpdate,
-                                firstUserId,
-                                secondUserId,
-                                Boolean.TRUE,
-                                Boolean.TRUE);
-                        result = true;
-                    }
-                }
-                break;
-            case ("FirstIsSecond"):
-                if (!isRequestToFriendExist(firstUserId, secondUserId)) {
-                    jdbcTemplate.update(sqlInsert,
-                            firstUserId,
-                            secondUserId,
-                            Boolean.FALSE,
-                            Boolean.TRUE);
-                    return false;
-                } else {
-                    if (isAcceptTrueFirstUser(firstUserId, secondUserId)) {
-                        jdbcTemplate.update(sqlUpdate,
-                                firstUserId,
-                                secondUserId,
-                                Boolean.TRUE,
-                                Boolean.TRUE);
-                        result = true;
-                    }
-                }
-                break;
+    /**
+     * Строка пары хранится с first_user_id < second_user_id, флаг выставляется только у инициатора.
+     * Возвращает true, если второй пользователь уже добавил первого и дружба стала взаимной.
+     */
+    public synchronized boolean addToFriends(Integer firstUserId, Integer secondUserId) {
+        boolean firstIsLow = firstUserId < secondUserId;
+        int low = Math.min(firstUserId, secondUserId);
+        int high = Math.max(firstUserId, secondUserId);
+        if (jdbcTemplate.update(SQL_ACCEPT, firstIsLow, !firstIsLow, low, high) == 0) {
+            jdbcTemplate.update(SQL_INSERT, low, high, firstIsLow, !firstIsLow);
         }
-        return result;
+        friendGraph.add(firstUserId, secondUserId);
+        return friendGraph.isFriend(secondUserId, firstUserId);
     }
 
-    public void removeFriend(Integer firstUserId, Integer secondUserId) {
-        String flag = "FirstIsFirst";
-        if (firstUserId > secondUserId) {
-            Integer idLarge = firstUserId;
-            firstUserId = secondUserId;
-            secondUserId = idLarge;
-            flag = "FirstIsSecond";
-        }
-        String sqlQueryToDelete = SQL_DELETE;
-        String sqlUpdate = SQL_UPDATE;
-        switch (flag) {
-            case ("FirstIsFirst"):
-                if (isRequestToFriendExist(firstUserId, secondUserId)) {
-                    if (isAcceptTrueSecondUser(firstUserId, secondUserId)) {
-                        jdbcTemplate.update(sqlUpdate,
-                                firstUserId,
-                                secondUserId,
-                                Boolean.FALSE,
-                                Boolean.TRUE);
-                    } else {
-                        jdbcTemplate.update(sqlQueryToDelete,
-                                firstUserId,
-                                secondUserId);
-                    }
-                }
-                break;
-            case ("FirstIsSecond"):
-                if (isRequestToFriendExist(firstUserId, secondUserId)) {
-                    if (isAcceptTrueFirstUser(firstUserId, secondUserId)) {
-                        jdbcTemplate.update(sqlUpdate,
-                                firstUserId,
-                                secondUserId,
-                                Boolean.TRUE,
-                                Boolean.FALSE);
-                    } else {
-                        jdbcTemplate.update(sqlQueryToDelete,
-                                firstUserId,
-                                secondUserId);
-                    }
-                }
-                break;
+    public synchronized void removeFriend(Integer firstUserId, Integer secondUserId) {
+        boolean firstIsLow = firstUserId < secondUserId;
+        int low = Math.min(firstUserId, secondUserId);
+        int high = Math.max(firstUserId, secondUserId);
+        if (jdbcTemplate.update(SQL_RETRACT, !firstIsLow, firstIsLow, low, high) > 0) {
+            jdbcTemplate.update(SQL_DELETE_RETRACTED, low, high);
         }
+        friendGraph.remove(firstUserId, secondUserId);
     }
 
     public Collection<User> getUserFriends(Integer userId) {
         log.info("User with ID {} get friends", userId);
-        Collection<User> userFriendsFirst;
-        Collection<User> userFriendsSecond;
-        String sqlFirst = SQL_FIRST_QUERY_FOR_USER_FRIENDS;
-        userFriendsFirst = jdbcTemplate.query(sqlFirst, this::mapRowToUser, userId);
-        String sqlSecond = SQL_SECOND_QUERY_FOR_USER_FRIENDS;
-        userFriendsSecond = jdbcTemplate.query(sqlSecond, this::mapRowToUser, userId);
-        userFriendsFirst.addAll(userFriendsSecond);
-        return userFriendsFirst;
+        return findUsersByIds(friendGraph.getFriends(userId), 0, Integer.MAX_VALUE);
+    }
+
+    public List<User> getUserFriendsPage(Integer userId, int afterId, int limit) {
+        int[] friendIds = friendGraph.getFriends(userId);
+        int from = Arrays.binarySearch(friendIds, afterId);
+        from = from >= 0 ? from + 1 : -from - 1;
+        return findUsersByIds(friendIds, from, limit);
     }
 
     public Collection<User> getMatchingFriends(Integer id, Integer otherId) {
         log.info("User with ID {} get matching friends with user {}", id, otherId);
-        Collection<User> firstUserFriends = this.getUserFriends(id);
-        Collection<User> secondUserFriends = this.getUserFriends(otherId);
-        return firstUserFriends
-                .stream()
-                .distinct()
-                .filter(secondUserFriends::contains)
-                .collect(Collectors.toSet());
+        int[] common = friendGraph.getCommonFriends(id, otherId);
+        return findUsersByIds(common, 0, common.length);
     }
 
-    private boolean isAcceptTrueFirstUser(Integer firstUserId, Integer secondUserId) {
-        boolean result = false;
-        try {
-            result = Boolean.TRUE.equals(jdbcTemplate.queryForObject(SQL_SELECT_ACCEPT_FIRST,
-                    Boolean.class, firstUserId, secondUserId));
-        } catch (Exception exp) {
-            log.warn(exp.getMessage());
-        }
-        return result;
+    public List<User> getFriendSuggestions(Integer userId, int count) {
+        log.info("User with ID {} get {} friend suggestions", userId, count);
+        int[] suggested = friendGraph.getSuggestions(userId, count);
+        return findUsersByIds(suggested, 0, suggested.length);
     }
 
-    private boolean isAcceptTrueSecondUser(Integer firstUserId, Integer secondUserId) {
-        boolean result = false;
-        try {
-            result = Boolean.TRUE.equals(jdbcTemplate.queryForObject(SQL_SELECT_ACCEPT_SECOND,
-                    Boolean.class, firstUserId, secondUserId));
-        } catch (Exception exp) {
-            log.warn(exp.getMessage());
-        }
-        return result;
+    public Optional<Integer> getDistance(Integer userId, Integer otherId, int maxDistance) {
+        log.info("User with ID {} get distance to user {}", userId, otherId);
+        int distance = friendGraph.getDistance(userId, otherId, maxDistance);
+        return distance < 0 ? Optional.empty() : Optional.of(distance);
     }
 
-    private boolean isRequestToFriendExist(Integer firstUserId, Integer secondUserId) {
-        int count = 0;
-        try {
-            count = jdbcTemplate.queryForObject(SQL_SELECT_FIRST_USER,
-                    Integer.class, firstUserId, secondUserId);
-        } catch (Exception exp) {
-            log.warn(exp.getMessage());
+    /**
+     * Загружает не больше limit пользователей из массива id начиная с позиции from,
+     * сохраняя порядок массива; отсутствующие в базе id пропускаются.
+     */
+    private List<User> findUsersByIds(int[] ids, int from, int limit) {
+        int to = (int) Math.min(ids.length, (long) from + limit);
+        List<User> users = new ArrayList<>(Math.max(0, to - from));
+        for (int batchFrom = from; batchFrom < to; batchFrom += BATCH_SIZE) {
+            List<Integer> batch = new ArrayList<>(BATCH_SIZE);
+            for (int i = batchFrom; i < Math.min(batchFrom + BATCH_SIZE, to); i++) {
+                batch.add(ids[i]);
+            }
+            Map<Integer, User> loaded = new HashMap<>();
+            namedParameterJdbcTemplate.query(SQL_SELECT_USERS_BY_IDS, new MapSqlParameterSource("ids", batch),
+                    rs -> {
+                        User user = mapRowToUser(rs, 0);
+                        loaded.put(user.getId(), user);
+                    });
+            for (Integer id : batch) {
+                User user = loaded.get(id);
+                if (user != null) {
+                    users.add(user);
+                }
+            }
         }
-        return count > 0;
+        return users;
     }
 
     private User mapRowToUser(ResultSet resultSet, int rowNum) throws SQLException {
@@ -3,6 +3,8 @@ package dev.bolohonov.filmorate.storage;
 import dev.bolohonov.filmorate.model.User;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 public interface FriendsStorage {
     boolean addToFriends(Integer firstUserId, Integer secondUserId);
@@ -11,6 +13,12 @@ public interface FriendsStorage {
 
     Collection<User> getUserFriends(Integer userId);
 
+    List<User> getUserFriendsPage(Integer userId, int afterId, int limit);
+
     Collection<User> getMatchingFriends(Integer id, Integer otherId);
 
+    List<User> getFriendSuggestions(Integer userId, int count);
+
+    Optional<Integer> getDistance(Integer userId, Integer otherId, int maxDistance);
+
 }
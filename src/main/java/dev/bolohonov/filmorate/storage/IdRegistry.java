@@ -0,0 +1,76 @@
+package dev.bolohonov.filmorate.storage;
+
+import dev.bolohonov.filmorate.exceptions.FilmNotFoundException;
+import dev.bolohonov.filmorate.exceptions.UserNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.BitSet;
+
+/**
+ * Множества существующих id фильмов и пользователей в памяти для проверок без обращения к базе.
+ */
+@Slf4j
+@Component
+public class IdRegistry {
+    private static final String SQL_SELECT_FILM_IDS = "select id from film";
+    private static final String SQL_SELECT_USER_IDS = "select id from user_filmorate";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BitSet films = new BitSet();
+    private final BitSet users = new BitSet();
+
+    public IdRegistry(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public synchronized void rebuild() {
+        films.clear();
+        users.clear();
+        jdbcTemplate.query(SQL_SELECT_FILM_IDS, rs -> {
+            films.set(rs.getInt("id"));
+        });
+        jdbcTemplate.query(SQL_SELECT_USER_IDS, rs -> {
+            users.set(rs.getInt("id"));
+        });
+        log.info("Реестр id загружен: {} фильмов, {} пользователей", films.cardinality(), users.cardinality());
+    }
+
+    public synchronized void addFilm(int filmId) {
+        films.set(filmId);
+    }
+
+    public synchronized void removeFilm(int filmId) {
+        films.clear(filmId);
+    }
+
+    public synchronized void addUser(int userId) {
+        users.set(userId);
+    }
+
+    public synchronized void removeUser(int userId) {
+        users.clear(userId);
+    }
+
+    public synchronized boolean hasFilm(int filmId) {
+        return filmId >= 0 && films.get(filmId);
+    }
+
+    public synchronized boolean hasUser(int userId) {
+        return userId >= 0 && users.get(userId);
+    }
+
+    public void checkFilmAndUser(int filmId, int userId) {
+        if (!hasFilm(filmId)) {
+            log.warn("Фильм с id {} не найден", filmId);
+            throw new FilmNotFoundException(String.format("Фильм с id %d не найден", filmId));
+        }
+        if (!hasUser(userId)) {
+            log.warn("Пользователь с id {} не найден", userId);
+            throw new UserNotFoundException("Пользователь не найден");
+        }
+    }
+}
@@ -2,13 +2,13 @@ package dev.bolohonov.filmorate.storage;
 
 import dev.bolohonov.filmorate.exceptions.FilmNotFoundException;
 import dev.bolohonov.filmorate.model.Film;
+import dev.bolohonov.filmorate.model.Suggestion;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Optional;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Component
@@ -21,6 +21,20 @@ public class InMemoryFilmStorage implements FilmStorage {
         return films.values();
     }
 
+    @Override
+    public void streamFilms(Consumer<Film> consumer) {
+        films.values().forEach(consumer);
+    }
+
+    @Override
+    public List<Film> getFilmsPage(int afterId, int limit) {
+        return films.values().stream()
+                .filter(film -> film.getId() > afterId)
+                .sorted(Comparator.comparingInt(Film::getId))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
     @Override
     public Film addFilm(Film film) {
         film.setId(appointId());
@@ -60,6 +74,11 @@ public class InMemoryFilmStorage implements FilmStorage {
         return null;
     }
 
+    @Override
+    public Collection<Suggestion> suggest(String prefix, int count) {
+        return null;
+    }
+
     public Collection<Film> findFilmsByDirectorId(Integer directorId) {
         return null;
     }
@@ -0,0 +1,40 @@
+package dev.bolohonov.filmorate.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * Сверяет денормализованный film.likes_count с таблицей likes и исправляет расхождения.
+ */
+@Slf4j
+@Component
+public class LikesCountReconciler {
+    private final JdbcTemplate jdbcTemplate;
+
+    private static final String SQL_RECONCILE_LIKES_COUNT =
+            "update film f set likes_count = (select count(*) from likes l where l.film_id = f.id) " +
+                    "where likes_count <> (select count(*) from likes l where l.film_id = f.id)";
+
+    public LikesCountReconciler(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    @Scheduled(initialDelayString = "${filmorate.likes-count.reconcile-delay-ms:3600000}",
+            fixedDelayString = "${filmorate.likes-count.reconcile-delay-ms:3600000}")
+    public void reconcileScheduled() {
+        reconcile();
+    }
+
+    public int reconcile() {
+        int repaired = jdbcTemplate.update(SQL_RECONCILE_LIKES_COUNT);
+        if (repaired > 0) {
+            log.warn("Исправлено значение likes_count у {} фильмов", repaired);
+        }
+        return repaired;
+    }
+}
@@ -1,16 +1,24 @@
 package dev.bolohonov.filmorate.storage;
 
+import dev.bolohonov.filmorate.enums.EventType;
+import dev.bolohonov.filmorate.enums.OperationType;
+import dev.bolohonov.filmorate.exceptions.FilmNotFoundException;
 import dev.bolohonov.filmorate.exceptions.RecommendationNotFoundException;
+import dev.bolohonov.filmorate.exceptions.UserNotFoundException;
+import dev.bolohonov.filmorate.model.BulkLike;
+import dev.bolohonov.filmorate.model.BulkLikeReport;
+import dev.bolohonov.filmorate.model.Event;
 import dev.bolohonov.filmorate.model.Film;
-import dev.bolohonov.filmorate.model.User;
+import dev.bolohonov.filmorate.model.RecallReport;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -19,195 +27,307 @@ import java.util.stream.Collectors;
 @Component
 public class LikesDbStorage implements LikesStorage {
     private final JdbcTemplate jdbcTemplate;
-    private final MpaStorage mpaDbStorage;
-    private final DirectorDbStorage directorDbStorage;
-    private final UserDbStorage userDbStorage;
+    private final FilmHydrator filmHydrator;
+    private final PopularityLeaderboard leaderboard;
+    private final LikesMatrix likesMatrix;
+    private final RecommendationEngine recommendationEngine;
+    private final CoLikeMatrix coLikeMatrix;
+    private final MinHashIndex minHashIndex;
+    private final FactorizationRecommender factorizationRecommender;
+    private final FilmFeatureIndex filmFeatureIndex;
+    private final LikesWriteBuffer likesWriteBuffer;
+    private final IdRegistry idRegistry;
+    private final EventStorage eventStorage;
+    private final boolean leaderboardEnabled;
 
-    private static final String SQL_INSERT =
-            "insert into likes (film_id, user_id) " +
-                    "values (?, ?)";
+    private static final int RECOMMENDATIONS_COUNT = 10;
+
+    private static final String SQL_MERGE =
+            "merge into likes l using (values (?, ?)) as v(film_id, user_id) " +
+                    "on l.film_id = v.film_id and l.user_id = v.user_id " +
+                    "when not matched then insert (film_id, user_id) values (v.film_id, v.user_id)";
     private static final String SQL_DELETE =
             "delete from likes where film_id = ? AND user_id = ?";
+    private static final String SQL_INCREMENT_LIKES_COUNT =
+            "update film set likes_count = likes_count + 1 where id = ?";
+    private static final String SQL_CHANGE_LIKES_COUNT =
+            "update film set likes_count = likes_count + ? where id = ?";
+    private static final String SQL_DECREMENT_LIKES_COUNT =
+            "update film set likes_count = likes_count - 1 where id = ? and likes_count > 0";
     private static final String SQL_SELECT_FILMS_BY_LIKES =
-            "select * from film " +
-                    "LEFT JOIN " +
-                    "(SELECT f.id, count(l.USER_ID) as likes_COUNT " +
-                    "FROM film AS f " +
-                    "LEFT JOIN Likes AS l ON f.id = l.film_id " +
-                    "GROUP BY f.id) as LC oN FILM.ID = LC.ID " +
-                    "GROUP BY film.id order by likes_COUNT desc limit ?";
-
-
+            "select id, rate, name, description, release_date, duration, mpa, director_id " +
+                    "from film " +
+                    "order by likes_count desc, id limit ?";
     private static final String SQL_SELECT_FILMS_BY_LIKES_BY_GENRE_AND_YEAR =
             "select FILM.ID, FILM.NAME, FILM.DESCRIPTION, FILM.RELEASE_DATE, FILM.DURATION, FILM.RATE, FILM.MPA, " +
-                    "DIRECTOR_ID " +
+                    "FILM.DIRECTOR_ID " +
                     "from FILM " +
-                    "LEFT JOIN " +
-                    "    (SELECT f.id, count(l.USER_ID) as likes_COUNT " +
-                    "           FROM film AS f " +
-                    "           LEFT JOIN Likes AS l ON f.id = l.film_id GROUP BY f.id) as LC ON FILM.ID = LC.ID " +
-                    "LEFT JOIN FILM_GENRE FG ON FILM.ID = FG.FILM_ID " +
-                    "LEFT JOIN GENRE G ON FG.GENRE_ID = G.ID " +
-                    "WHERE g.ID = ? AND year(FILM.RELEASE_DATE) = ? " +
-                    "GROUP BY film.id order by likes_COUNT desc limit ?";
+                    "JOIN FILM_GENRE FG ON FILM.ID = FG.FILM_ID " +
+                    "WHERE FG.GENRE_ID = ? AND FILM.RELEASE_YEAR = ? " +
+                    "order by FILM.likes_count desc, FILM.ID limit ?";
     private static final String SQL_SELECT_FILMS_BY_LIKES_BY_GENRE =
-            "select FILM.ID, FILM.NAME, FILM.DESCRIPTION, FILM.RELEASE_DATE, FILM.DURATION, FILM.RATE, FILM.MPA " +
-                    "DIRECTOR_ID " +
+            "select FILM.ID, FILM.NAME, FILM.DESCRIPTION, FILM.RELEASE_DATE, FILM.DURATION, FILM.RATE, FILM.MPA, " +
+                    "FILM.DIRECTOR_ID " +
                     "from FILM " +
-                    "LEFT JOIN " +
-                    "    (SELECT f.id, count(l.USER_ID) as likes_COUNT " +
-                    "           FROM film AS f " +
-                    "           LEFT JOIN Likes AS l ON f.id = l.film_id GROUP BY f.id) as LC ON FILM.ID = LC.ID " +
-                    "LEFT JOIN FILM_GENRE FG ON FILM.ID = FG.FILM_ID " +
-                    "LEFT JOIN GENRE G ON FG.GENRE_ID = G.ID " +
-                    "WHERE g.ID = ? " +
-                    "GROUP BY film.id order by likes_COUNT desc limit ?";
-
+                    "JOIN FILM_GENRE FG ON FILM.ID = FG.FILM_ID " +
+                    "WHERE FG.GENRE_ID = ? " +
+                    "order by FILM.likes_count desc, FILM.ID limit ?";
     private static final String SQL_SELECT_FILMS_BY_LIKES_BY_YEAR =
-            "select FILM.ID, FILM.NAME, FILM.DESCRIPTION, FILM.RELEASE_DATE, FILM.DURATION, FILM.RATE, FILM.MPA " +
-                    "DIRECTOR_ID " +
+            "select FILM.ID, FILM.NAME, FILM.DESCRIPTION, FILM.RELEASE_DATE, FILM.DURATION, FILM.RATE, FILM.MPA, " +
+                    "FILM.DIRECTOR_ID " +
                     "from FILM " +
-                    "LEFT JOIN " +
-                    "    (SELECT f.id, count(l.USER_ID) as likes_COUNT " +
-                    "           FROM film AS f " +
-                    "           LEFT JOIN Likes AS l ON f.id = l.film_id GROUP BY f.id) as LC ON FILM.ID = LC.ID " +
-                    "WHERE year(FILM.RELEASE_DATE) = ? " +
-                    "GROUP BY film.id order by likes_COUNT desc limit ?";
-
-    private static final String SQL_SELECT_FILMS_THAT_USER_LIKES =
-            "select * from film RIGHT JOIN " +
-                    "(SELECT l.film_id FROM likes AS l where l.user_id = ?) as LC ON FILM.ID = LC.film_id " +
-                    "GROUP BY film.id";
-
-    private static final String SQL_SELECT =
-            "select user_id from likes where film_id = ? and user_id = ?";
-    private static final String SQL_FIND_ALL_LIKES =
-           "SELECT user_id " +
-           "FROM likes " +
-           "WHERE film_id = ?;";
-
-    public LikesDbStorage(JdbcTemplate jdbcTemplate, MpaStorage mpaDbStorage, DirectorDbStorage directorDbStorage, UserDbStorage userDbStorage) {
+                    "WHERE FILM.RELEASE_YEAR = ? " +
+                    "order by FILM.likes_count desc, FILM.ID limit ?";
+
+    private static final String SQL_FILM_EXISTS =
+            "select exists(select 1 from film where id = ?)";
+    private static final String SQL_USER_EXISTS =
+            "select exists(select 1 from user_filmorate where id = ?)";
+
+    public LikesDbStorage(JdbcTemplate jdbcTemplate, FilmHydrator filmHydrator, PopularityLeaderboard leaderboard,
+                          LikesMatrix likesMatrix, RecommendationEngine recommendationEngine,
+                          CoLikeMatrix coLikeMatrix, MinHashIndex minHashIndex,
+                          FactorizationRecommender factorizationRecommender, FilmFeatureIndex filmFeatureIndex,
+                          LikesWriteBuffer likesWriteBuffer, IdRegistry idRegistry, EventStorage eventStorage,
+                          @Value("${filmorate.leaderboard.enabled:true}") boolean leaderboardEnabled) {
         this.jdbcTemplate = jdbcTemplate;
-        this.mpaDbStorage = mpaDbStorage;
-        this.directorDbStorage = directorDbStorage;
-        this.userDbStorage = userDbStorage;
+        this.filmHydrator = filmHydrator;
+        this.leaderboard = leaderboard;
+        this.likesMatrix = likesMatrix;
+        this.recommendationEngine = recommendationEngine;
+        this.coLikeMatrix = coLikeMatrix;
+        this.minHashIndex = minHashIndex;
+        this.factorizationRecommender = factorizationRecommender;
+        this.filmFeatureIndex = filmFeatureIndex;
+        this.likesWriteBuffer = likesWriteBuffer;
+        this.idRegistry = idRegistry;
+        this.eventStorage = eventStorage;
+        this.leaderboardEnabled = leaderboardEnabled;
     }
 
     @Override
+    @Transactional
     public void addLike(Integer filmId, Integer userId) {
-        if (!this.isLLikeExist(filmId, userId)) {
-            jdbcTemplate.update(SQL_INSERT,
-                    filmId,
-                    userId);
+        if (likesWriteBuffer.isEnabled()) {
+            idRegistry.checkFilmAndUser(filmId, userId);
+            if (!likesWriteBuffer.addLike(filmId, userId, () -> applyLike(filmId, userId))) {
+                log.warn("Пользователь с id {} уже поставил лайк фильму с id {}", userId, filmId);
+            }
+            return;
+        }
+        int inserted;
+        try {
+            inserted = jdbcTemplate.update(SQL_MERGE, filmId, userId);
+        } catch (DuplicateKeyException e) {
+            // тот же лайк параллельно записан другим запросом
+            inserted = 0;
+        } catch (DataIntegrityViolationException e) {
+            checkExists(filmId, userId);
+            throw e;
+        }
+        if (inserted > 0) {
+            jdbcTemplate.update(SQL_INCREMENT_LIKES_COUNT, filmId);
+            applyLike(filmId, userId);
         } else {
             log.warn("Пользователь с id {} уже поставил лайк фильму с id {}", userId, filmId);
         }
     }
 
     @Override
+    @Transactional
     public void removeLike(Integer filmId, Integer userId) {
-        jdbcTemplate.update(SQL_DELETE, filmId, userId);
+        if (likesWriteBuffer.isEnabled()) {
+            idRegistry.checkFilmAndUser(filmId, userId);
+            likesWriteBuffer.removeLike(filmId, userId, () -> applyUnlike(filmId, userId));
+            return;
+        }
+        if (jdbcTemplate.update(SQL_DELETE, filmId, userId) > 0) {
+            jdbcTemplate.update(SQL_DECREMENT_LIKES_COUNT, filmId);
+            applyUnlike(filmId, userId);
+        } else {
+            checkExists(filmId, userId);
+        }
+    }
+
+    /**
+     * Записывает пачку лайков в одной транзакции пакетами JDBC. Лайки с неизвестными id фильма
+     * или пользователя отклоняются без обращения к базе, повторные учитываются как дубликаты.
+     */
+    @Override
+    @Transactional
+    public BulkLikeReport addLikes(List<BulkLike> likes, boolean withEvents) {
+        List<BulkLike> valid = new ArrayList<>(likes.size());
+        for (BulkLike like : likes) {
+            if (like.getFilmId() != null && like.getUserId() != null
+                    && idRegistry.hasFilm(like.getFilmId()) && idRegistry.hasUser(like.getUserId())) {
+                valid.add(like);
+            }
+        }
+        int[] merged = jdbcTemplate.batchUpdate(SQL_MERGE, valid.stream()
+                .map(like -> new Object[]{like.getFilmId(), like.getUserId()})
+                .collect(Collectors.toList()));
+        List<BulkLike> inserted = new ArrayList<>();
+        Map<Integer, Integer> addedByFilm = new HashMap<>();
+        for (int i = 0; i < merged.length; i++) {
+            if (merged[i] > 0) {
+                BulkLike like = valid.get(i);
+                inserted.add(like);
+                addedByFilm.merge(like.getFilmId(), 1, Integer::sum);
+            }
+        }
+        jdbcTemplate.batchUpdate(SQL_CHANGE_LIKES_COUNT, addedByFilm.entrySet().stream()
+                .map(entry -> new Object[]{entry.getValue(), entry.getKey()})
+                .collect(Collectors.toList()));
+        if (withEvents) {
+            LocalDateTime now = LocalDateTime.now();
+            eventStorage.addEvents(inserted.stream()
+                    .map(like -> Event.builder()
+                            .timestamp(now)
+                            .userId(like.getUserId())
+                            .eventType(EventType.LIKE)
+                            .operation(OperationType.ADD)
+                            .entityId(like.getFilmId())
+                            .build())
+                    .collect(Collectors.toList()));
+        }
+        inserted.forEach(like -> applyLike(like.getFilmId(), like.getUserId()));
+        return new BulkLikeReport(inserted.size(), valid.size() - inserted.size(), likes.size() - valid.size());
+    }
+
+    /**
+     * Обновляет модели в памяти после лайка; false, если лайк уже был учтен.
+     * Матрица лайков, совместные лайки и MinHash обновляются под блокировкой пользователя
+     * по снимку его фильмов, взятому вместе с изменением матрицы.
+     */
+    private boolean applyLike(int filmId, int userId) {
+        synchronized (likesMatrix.userLock(userId)) {
+            int[] otherFilms = likesMatrix.like(filmId, userId);
+            if (otherFilms == null) {
+                return false;
+            }
+            coLikeMatrix.like(filmId, otherFilms);
+            minHashIndex.like(userId, filmId);
+        }
+        leaderboard.like(filmId);
+        factorizationRecommender.onLike();
+        return true;
+    }
+
+    /**
+     * Обновляет модели в памяти после снятия лайка; false, если лайка не было.
+     */
+    private boolean applyUnlike(int filmId, int userId) {
+        synchronized (likesMatrix.userLock(userId)) {
+            int[] films = likesMatrix.unlike(filmId, userId);
+            if (films == null) {
+                return false;
+            }
+            coLikeMatrix.unlike(filmId, films);
+            minHashIndex.update(userId, films);
+        }
+        leaderboard.unlike(filmId);
+        return true;
     }
 
     @Override
     public Collection<Film> getFilmsByLikes(Integer count, Integer genreId, Integer year) {
+        if (leaderboardEnabled) {
+            return this.getFilmsByLikesFromLeaderboard(count, genreId, year);
+        }
         if (genreId != 0 && year != 0) {
-            return jdbcTemplate.query(SQL_SELECT_FILMS_BY_LIKES_BY_GENRE_AND_YEAR, this::mapRowToFilm, genreId, year, count);
+            return filmHydrator.query(SQL_SELECT_FILMS_BY_LIKES_BY_GENRE_AND_YEAR, genreId, year, count);
         }
         if (genreId != 0) {
-            return jdbcTemplate.query(SQL_SELECT_FILMS_BY_LIKES_BY_GENRE, this::mapRowToFilm, genreId, count);
+            return filmHydrator.query(SQL_SELECT_FILMS_BY_LIKES_BY_GENRE, genreId, count);
         }
         if (year != 0) {
-            return jdbcTemplate.query(SQL_SELECT_FILMS_BY_LIKES_BY_YEAR, this::mapRowToFilm, year, count);
+            return filmHydrator.query(SQL_SELECT_FILMS_BY_LIKES_BY_YEAR, year, count);
         }
-        return jdbcTemplate.query(SQL_SELECT_FILMS_BY_LIKES, this::mapRowToFilm, count);
+        return filmHydrator.query(SQL_SELECT_FILMS_BY_LIKES, count);
 
     }
 
+    private List<Film> getFilmsByLikesFromLeaderboard(int count, int genreId, int year) {
+        while (true) {
+            List<Integer> filmIds = leaderboard.getTop(count, genreId, year);
+            List<Film> films = filmHydrator.findByIds(filmIds);
+            if (films.size() == filmIds.size()) {
+                return films;
+            }
+            Set<Integer> foundIds = films.stream().map(Film::getId).collect(Collectors.toSet());
+            filmIds.stream()
+                    .filter(filmId -> !foundIds.contains(filmId))
+                    .forEach(filmId -> {
+                        log.warn("Фильм с id {} есть в рейтинге, но отсутствует в базе", filmId);
+                        leaderboard.removeFilm(filmId);
+                    });
+        }
+    }
+
     @Override
     public Collection<Film> getRecommendations(Integer userId) {
-        Map<User, Collection<Film>> mapMatchingLikes = this.getUsersMatchingLikes(userId);
-        int count = mapMatchingLikes.size();
-        Collection<Film> filmsToRecommend = new ArrayList<>();
-        for (Map.Entry e : mapMatchingLikes.entrySet()) {
-            User user = (User) e.getKey();
-            Collection<Film> filmsUserLikes = this.getFilmsThatUserLikes(user.getId());
-            Collection<Film> filmsMatchingLikes = (Collection<Film>) e.getValue();
-            filmsToRecommend.addAll(filmsUserLikes.stream()
-                    .filter(film -> !filmsMatchingLikes.contains(film)).collect(Collectors.toSet()));
-            --count;
-            if (!filmsToRecommend.isEmpty()) {
-                return filmsToRecommend;
+        List<Integer> filmIds = factorizationRecommender.recommend(userId, RECOMMENDATIONS_COUNT);
+        if (!filmIds.isEmpty()) {
+            return filmHydrator.findByIds(filmIds);
+        }
+        try {
+            filmIds = Arrays.stream(recommendationEngine.recommend(userId))
+                    .boxed()
+                    .collect(Collectors.toList());
+        } catch (RecommendationNotFoundException e) {
+            int[] userFilms = likesMatrix.getFilms(userId);
+            filmIds = coLikeMatrix.recommend(userFilms, RECOMMENDATIONS_COUNT);
+            if (filmIds.isEmpty()) {
+                filmIds = filmFeatureIndex.nearest(userFilms, RECOMMENDATIONS_COUNT, Collections.emptySet());
             }
-            if (count == 0 && filmsToRecommend.isEmpty()) {
-                throw new RecommendationNotFoundException("Пока мы не можем вам ничего рекомендовать");
+            if (!filmIds.isEmpty()) {
+                log.info("Для пользователя с id {} рекомендации подобраны по похожим фильмам", userId);
+                return filmHydrator.findByIds(filmIds);
             }
+            filmIds = getPopularNotLiked(userFilms);
+            if (filmIds.isEmpty()) {
+                throw e;
+            }
+            log.info("Для пользователя с id {} рекомендованы популярные фильмы", userId);
         }
-        return filmsToRecommend;
+        return filmHydrator.findByIds(filmIds);
     }
 
-    private Collection<Film> getFilmsThatUserLikes(Integer userId) {
-        return jdbcTemplate.query(SQL_SELECT_FILMS_THAT_USER_LIKES, this::mapRowToFilm, userId);
+    /**
+     * Запасной вариант для пользователя без лайков или без похожих фильмов: самые популярные фильмы,
+     * которые он еще не лайкал.
+     */
+    private List<Integer> getPopularNotLiked(int[] userFilms) {
+        Set<Integer> liked = Arrays.stream(userFilms).boxed().collect(Collectors.toSet());
+        return leaderboard.getTop(RECOMMENDATIONS_COUNT + userFilms.length, 0, 0).stream()
+                .filter(filmId -> !liked.contains(filmId))
+                .limit(RECOMMENDATIONS_COUNT)
+                .collect(Collectors.toList());
     }
 
-    private Map<User, Collection<Film>> getUsersMatchingLikes(Integer userId) {
-        Collection<Film> firstUserLikes = this.getFilmsThatUserLikes(userId);
-        Collection<User> users = this.userDbStorage.getUsers();
-        users.remove(userDbStorage.findUserById(userId).get());
-        Map<User, Collection<Film>> usersMatchingLikes = new HashMap<>();
-        for (User u : users) {
-            Collection<Film> likesMatch;
-            likesMatch = firstUserLikes
-                    .stream()
-                    .filter(this.getFilmsThatUserLikes(u.getId())::contains)
-                    .collect(Collectors.toSet());
-            if (likesMatch.size() != 0) {
-                usersMatchingLikes.put(u, likesMatch);
-            }
-        }
-        if (usersMatchingLikes.isEmpty()) {
-            throw new RecommendationNotFoundException("Пользователи с похожими интересами не найдены");
-        }
-        return usersMatchingLikes
-                .entrySet()
-                .stream()
-                .sorted(Map.Entry.comparingByValue((o1, o2) -> o2.size() - o1.size()))
-                .collect(Collectors.toMap(
-                        Map.Entry::getKey,
-                        Map.Entry::getValue,
-                        (oldValue, newValue) -> oldValue, LinkedHashMap::new));
+    @Override
+    public RecallReport measureRecommendationRecall(Integer sample) {
+        return recommendationEngine.measureRecall(sample);
     }
 
-    private boolean isLLikeExist(Integer filmId, Integer userId) {
-        int count = 0;
-        try {
-            count = jdbcTemplate.queryForObject(SQL_SELECT, Integer.class, filmId, userId);
-        } catch (Exception exp) {
-            log.warn(exp.getMessage());
+    @Override
+    public Collection<Film> getSimilarFilms(Integer filmId, Integer count) {
+        List<Integer> filmIds = coLikeMatrix.getSimilar(filmId, count);
+        if (filmIds.size() < count) {
+            filmIds = new ArrayList<>(filmIds);
+            filmIds.addAll(filmFeatureIndex.getSimilar(filmId, count - filmIds.size(), new HashSet<>(filmIds)));
         }
-        return count > 0;
+        return filmHydrator.findByIds(filmIds);
     }
 
-    private Film mapRowToFilm(ResultSet resultSet, int rowNum) throws SQLException {
-        Film film =  Film.builder()
-                .id(resultSet.getInt("id"))
-                .rate(resultSet.getInt("rate"))
-                .name(resultSet.getString("name"))
-                .description(resultSet.getString("description"))
-                .releaseDate(resultSet.getDate("release_date").toLocalDate())
-                .duration(Duration.ofSeconds(resultSet.getInt("duration")))
-                .mpa(mpaDbStorage.getMpaById(resultSet.getInt("mpa")).get())
-                .director(directorDbStorage.findDirectorById(resultSet.getInt("director_id")).orElse(null))
-                .build();
-
-        SqlRowSet likesAsRowSet = jdbcTemplate.queryForRowSet(SQL_FIND_ALL_LIKES, film.getId());
-        Set<Integer> likes = new HashSet<>();
-        while (likesAsRowSet.next()) {
-            Integer likeId = likesAsRowSet.getInt("user_id");
-
-            likes.add(likeId);
-        }
-        film.setLikes(likes);
-        return film;
+    private void checkExists(Integer filmId, Integer userId) {
+        if (!Boolean.TRUE.equals(jdbcTemplate.queryForObject(SQL_FILM_EXISTS, Boolean.class, filmId))) {
+            log.warn("Фильм с id {} не найден", filmId);
+            throw new FilmNotFoundException(String.format("Фильм с id %d не найден", filmId));
+        }
+        if (!Boolean.TRUE.equals(jdbcTemplate.queryForObject(SQL_USER_EXISTS, Boolean.class, userId))) {
+            log.warn("Пользователь с id {} не найден", userId);
+            throw new UserNotFoundException("Пользователь не найден");
+        }
     }
 }
@@ -0,0 +1,216 @@
+package dev.bolohonov.filmorate.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Матрица лайков пользователь x фильм в памяти: для каждого пользователя сжатый битмап id понравившихся фильмов
+ * и для каждого фильма битмап id поставивших лайк пользователей.
+ */
+@Slf4j
+@Component
+public class LikesMatrix {
+    private static final String SQL_SELECT_ALL_LIKES = "select film_id, user_id from likes";
+
+    private static final RoaringBitmap EMPTY = new RoaringBitmap();
+    private static final int USER_LOCK_STRIPES = 256;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, RoaringBitmap> filmsByUser = new HashMap<>();
+    private final Map<Integer, RoaringBitmap> usersByFilm = new HashMap<>();
+    private final Object[] userLocks = new Object[USER_LOCK_STRIPES];
+
+    public LikesMatrix(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        for (int i = 0; i < userLocks.length; i++) {
+            userLocks[i] = new Object();
+        }
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            filmsByUser.clear();
+            usersByFilm.clear();
+            jdbcTemplate.query(SQL_SELECT_ALL_LIKES, rs -> {
+                addLocked(rs.getInt("film_id"), rs.getInt("user_id"));
+            });
+            filmsByUser.values().forEach(RoaringBitmap::runOptimize);
+            usersByFilm.values().forEach(RoaringBitmap::runOptimize);
+            log.info("Матрица лайков построена для {} пользователей", filmsByUser.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Блокировка пользователя для согласованного обновления производных моделей (совместных лайков, MinHash)
+     * по снимку его фильмов: изменения одного пользователя применяются к ним в том же порядке,
+     * в каком они попали в матрицу.
+     */
+    public Object userLock(int userId) {
+        return userLocks[Math.floorMod(userId, userLocks.length)];
+    }
+
+    /**
+     * @return фильмы пользователя до лайка или null, если лайк уже был
+     */
+    public int[] like(int filmId, int userId) {
+        lock.writeLock().lock();
+        try {
+            RoaringBitmap films = filmsOf(userId);
+            if (films.contains(filmId)) {
+                return null;
+            }
+            int[] before = films.toArray();
+            addLocked(filmId, userId);
+            return before;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return фильмы пользователя после снятия лайка или null, если лайка не было
+     */
+    public int[] unlike(int filmId, int userId) {
+        lock.writeLock().lock();
+        try {
+            if (!filmsOf(userId).contains(filmId)) {
+                return null;
+            }
+            removeLocked(filmsByUser, userId, filmId);
+            removeLocked(usersByFilm, filmId, userId);
+            return filmsOf(userId).toArray();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeFilm(int filmId) {
+        lock.writeLock().lock();
+        try {
+            RoaringBitmap users = usersByFilm.remove(filmId);
+            if (users != null) {
+                users.forEach((int userId) -> removeLocked(filmsByUser, userId, filmId));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeUser(int userId) {
+        lock.writeLock().lock();
+        try {
+            RoaringBitmap films = filmsByUser.remove(userId);
+            if (films != null) {
+                films.forEach((int filmId) -> removeLocked(usersByFilm, filmId, userId));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isLiked(int filmId, int userId) {
+        lock.readLock().lock();
+        try {
+            RoaringBitmap films = filmsByUser.get(userId);
+            return films != null && films.contains(filmId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int[] getFilms(int userId) {
+        lock.readLock().lock();
+        try {
+            return filmsOf(userId).toArray();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int[] getUsers(int filmId) {
+        lock.readLock().lock();
+        try {
+            return usersOf(filmId).toArray();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int[] getCommonFilms(int userId, int otherUserId) {
+        lock.readLock().lock();
+        try {
+            RoaringBitmap films = filmsByUser.get(userId);
+            RoaringBitmap otherFilms = filmsByUser.get(otherUserId);
+            if (films == null || otherFilms == null) {
+                return new int[0];
+            }
+            return RoaringBitmap.and(films, otherFilms).toArray();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Блокировка на чтение для согласованного обхода матрицы через {@link #filmsOf} и {@link #usersOf}.
+     */
+    Lock readLock() {
+        return lock.readLock();
+    }
+
+    /**
+     * Id всех фильмов, у которых есть лайки; вызывать под {@link #readLock()}.
+     */
+    int[] likedFilms() {
+        return usersByFilm.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+    }
+
+    /**
+     * Id всех пользователей, у которых есть лайки; вызывать под {@link #readLock()}.
+     */
+    int[] likingUsers() {
+        return filmsByUser.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+    }
+
+    /**
+     * Фильмы, которые понравились пользователю; вызывать под {@link #readLock()}, битмап не изменять.
+     */
+    RoaringBitmap filmsOf(int userId) {
+        return filmsByUser.getOrDefault(userId, EMPTY);
+    }
+
+    /**
+     * Пользователи, поставившие лайк фильму; вызывать под {@link #readLock()}, битмап не изменять.
+     */
+    RoaringBitmap usersOf(int filmId) {
+        return usersByFilm.getOrDefault(filmId, EMPTY);
+    }
+
+    private void addLocked(int filmId, int userId) {
+        filmsByUser.computeIfAbsent(userId, id -> new RoaringBitmap()).add(filmId);
+        usersByFilm.computeIfAbsent(filmId, id -> new RoaringBitmap()).add(userId);
+    }
+
+    private static void removeLocked(Map<Integer, RoaringBitmap> bitmaps, int key, int value) {
+        RoaringBitmap bitmap = bitmaps.get(key);
+        if (bitmap != null) {
+            bitmap.remove(value);
+            if (bitmap.isEmpty()) {
+                bitmaps.remove(key);
+            }
+        }
+    }
+}
@@ -1,16 +1,26 @@
 package dev.bolohonov.filmorate.storage;
 
+import dev.bolohonov.filmorate.model.BulkLike;
+import dev.bolohonov.filmorate.model.BulkLikeReport;
 import dev.bolohonov.filmorate.model.Film;
+import dev.bolohonov.filmorate.model.RecallReport;
 
 import java.util.Collection;
+import java.util.List;
 
 public interface LikesStorage {
     void addLike(Integer userId, Integer filmId);
 
     void removeLike(Integer userId, Integer filmId);
 
+    BulkLikeReport addLikes(List<BulkLike> likes, boolean withEvents);
+
     Collection<Film> getFilmsByLikes(Integer count, Integer genreId, Integer year);
     
     Collection<Film> getRecommendations(Integer userId);
 
+    Collection<Film> getSimilarFilms(Integer filmId, Integer count);
+
+    RecallReport measureRecommendationRecall(Integer sample);
+
 }
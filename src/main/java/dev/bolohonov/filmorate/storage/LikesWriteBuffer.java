@@ -0,0 +1,272 @@
+package dev.bolohonov.filmorate.storage;
+
+import dev.bolohonov.filmorate.enums.EventType;
+import dev.bolohonov.filmorate.enums.OperationType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Отложенная запись лайков и событий ленты о них. Операции складываются в ограниченную очередь,
+ * фоновый поток раз в flush-interval-ms или при накоплении flush-size операций схлопывает пары
+ * лайк/снятие лайка и пишет остаток пакетами JDBC в одной транзакции. При заполненной очереди
+ * вызывающий поток ждет освобождения места. При остановке очередь дописывается полностью.
+ * Модели в памяти обновляются вызывающим кодом сразу, до записи в базу.
+ */
+@Slf4j
+@Component
+public class LikesWriteBuffer {
+    private static final String SQL_MERGE_LIKE =
+            "merge into likes l using (values (?, ?)) as v(film_id, user_id) " +
+                    "on l.film_id = v.film_id and l.user_id = v.user_id " +
+                    "when not matched then insert (film_id, user_id) values (v.film_id, v.user_id)";
+    private static final String SQL_DELETE_LIKE =
+            "delete from likes where film_id = ? and user_id = ?";
+    private static final String SQL_CHANGE_LIKES_COUNT =
+            "update film set likes_count = greatest(likes_count + ?, 0) where id = ?";
+    private static final String SQL_INSERT_EVENT =
+            "insert into event (event_time, user_id, event_type, operation, entity_id) " +
+                    "select ?, ?, ?, ?, ? where not exists (select 1 from event " +
+                    "where user_id = ? and event_type = ? and operation = ? and entity_id = ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final long flushIntervalMs;
+    private final int flushSize;
+    private final BlockingQueue<Write> queue;
+    private final Lock submitLock = new ReentrantLock();
+    private final Lock flushLock = new ReentrantLock();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "likes-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    public LikesWriteBuffer(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                            @Value("${filmorate.likes.write-behind.enabled:false}") boolean enabled,
+                            @Value("${filmorate.likes.write-behind.flush-interval-ms:200}") long flushIntervalMs,
+                            @Value("${filmorate.likes.write-behind.flush-size:1000}") int flushSize,
+                            @Value("${filmorate.likes.write-behind.queue-capacity:100000}") int queueCapacity) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.flushIntervalMs = flushIntervalMs;
+        this.flushSize = flushSize;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (enabled) {
+            flusher.scheduleWithFixedDelay(this::flushSafely, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(10, TimeUnit.SECONDS);
+        flush();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Ставит лайк в очередь, если applyInMemory вернул true, то есть состояние в памяти изменилось.
+     * Применение и постановка в очередь идут под одной блокировкой, поэтому порядок операций в очереди
+     * совпадает с порядком изменений в памяти.
+     */
+    public boolean addLike(int filmId, int userId, BooleanSupplier applyInMemory) {
+        return submit(new Write(Kind.LIKE, filmId, userId, null, null, null), applyInMemory);
+    }
+
+    public boolean removeLike(int filmId, int userId, BooleanSupplier applyInMemory) {
+        return submit(new Write(Kind.UNLIKE, filmId, userId, null, null, null), applyInMemory);
+    }
+
+    public void addEvent(int userId, int entityId, EventType eventType, OperationType operation) {
+        submit(new Write(Kind.EVENT, entityId, userId, eventType, operation,
+                Timestamp.valueOf(LocalDateTime.now())), () -> true);
+    }
+
+    /**
+     * Записывает все накопленные операции в потоке записи и ждет окончания. Вызывается вне транзакции:
+     * запись идет в собственных транзакциях и не должна откатываться вместе с транзакцией вызывающего.
+     */
+    public void flushAndWait() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            flusher.submit(this::flush).get();
+        } catch (RejectedExecutionException e) {
+            flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Прервано ожидание записи лайков", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Ошибка отложенной записи лайков", e.getCause());
+        }
+    }
+
+    /**
+     * Записывает все накопленные операции. Выполняется в потоке записи; блокировка нужна только
+     * для записи остатка при остановке, если поток записи не завершился вовремя.
+     */
+    private void flush() {
+        flushLock.lock();
+        try {
+            List<Write> batch = new ArrayList<>();
+            while (queue.drainTo(batch, flushSize) > 0) {
+                write(batch);
+                batch.clear();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private boolean submit(Write write, BooleanSupplier applyInMemory) {
+        submitLock.lock();
+        try {
+            if (!applyInMemory.getAsBoolean()) {
+                return false;
+            }
+            queue.put(write);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Прервано ожидание места в очереди записи лайков", e);
+        } finally {
+            submitLock.unlock();
+        }
+        if (queue.size() >= flushSize && flushRequested.compareAndSet(false, true)) {
+            flusher.execute(() -> {
+                flushRequested.set(false);
+                flushSafely();
+            });
+        }
+        return true;
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Ошибка отложенной записи лайков", e);
+        }
+    }
+
+    private void write(List<Write> batch) {
+        Map<Long, Write> likes = new LinkedHashMap<>();
+        List<Write> events = new ArrayList<>();
+        for (Write write : batch) {
+            if (write.kind == Kind.EVENT) {
+                events.add(write);
+            } else if (likes.remove(write.key()) == null) {
+                likes.put(write.key(), write);
+            }
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> writeLocked(likes.values(), events));
+            log.debug("Записано {} лайков и {} событий из {} операций", likes.size(), events.size(), batch.size());
+        } catch (DataAccessException e) {
+            log.warn("Пакетная запись лайков не удалась, запись по одной: {}", e.getMessage());
+            for (Write write : likes.values()) {
+                writeOne(List.of(write), List.of());
+            }
+            for (Write event : events) {
+                writeOne(List.of(), List.of(event));
+            }
+        }
+    }
+
+    private void writeOne(Collection<Write> likes, List<Write> events) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> writeLocked(likes, events));
+        } catch (DataAccessException e) {
+            log.error("Не удалось записать операцию с лайком: {}", e.getMessage());
+        }
+    }
+
+    private void writeLocked(Collection<Write> likes, List<Write> events) {
+        List<Object[]> added = new ArrayList<>();
+        List<Object[]> removed = new ArrayList<>();
+        for (Write write : likes) {
+            (write.kind == Kind.LIKE ? added : removed).add(new Object[]{write.filmId, write.userId});
+        }
+        Map<Integer, Integer> deltas = new HashMap<>();
+        countChanges(jdbcTemplate.batchUpdate(SQL_MERGE_LIKE, added), added, 1, deltas);
+        countChanges(jdbcTemplate.batchUpdate(SQL_DELETE_LIKE, removed), removed, -1, deltas);
+        List<Object[]> counts = new ArrayList<>();
+        deltas.forEach((filmId, delta) -> {
+            if (delta != 0) {
+                counts.add(new Object[]{delta, filmId});
+            }
+        });
+        jdbcTemplate.batchUpdate(SQL_CHANGE_LIKES_COUNT, counts);
+        List<Object[]> eventRows = new ArrayList<>();
+        for (Write event : events) {
+            eventRows.add(new Object[]{event.time, event.userId, event.eventType.name(), event.operation.name(),
+                    event.filmId, event.userId, event.eventType.name(), event.operation.name(), event.filmId});
+        }
+        jdbcTemplate.batchUpdate(SQL_INSERT_EVENT, eventRows);
+    }
+
+    private static void countChanges(int[] updated, List<Object[]> rows, int delta, Map<Integer, Integer> deltas) {
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] != 0) {
+                deltas.merge((Integer) rows.get(i)[0], delta, Integer::sum);
+            }
+        }
+    }
+
+    private enum Kind {
+        LIKE, UNLIKE, EVENT
+    }
+
+    private static final class Write {
+        private final Kind kind;
+        private final int filmId;
+        private final int userId;
+        private final EventType eventType;
+        private final OperationType operation;
+        private final Timestamp time;
+
+        Write(Kind kind, int filmId, int userId, EventType eventType, OperationType operation, Timestamp time) {
+            this.kind = kind;
+            this.filmId = filmId;
+            this.userId = userId;
+            this.eventType = eventType;
+            this.operation = operation;
+            this.time = time;
+        }
+
+        long key() {
+            return ((long) filmId << 32) | (userId & 0xffffffffL);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package dev.bolohonov.filmorate.storage;
+
+import java.util.Arrays;
+
+/**
+ * Ограниченная куча из k наименьших значений long на примитивном массиве.
+ * Класс не потокобезопасен, каждый поток заполняет свою кучу, затем кучи сливаются через {@link #merge}.
+ */
+class LongTopK {
+    private final long[] heap;
+    private int size;
+
+    LongTopK(int k) {
+        this.heap = new long[k];
+    }
+
+    void offer(long value) {
+        if (size < heap.length) {
+            heap[size] = value;
+            siftUp(size++);
+        } else if (size > 0 && value < heap[0]) {
+            heap[0] = value;
+            siftDown(0);
+        }
+    }
+
+    LongTopK merge(LongTopK other) {
+        for (int i = 0; i < other.size; i++) {
+            offer(other.heap[i]);
+        }
+        return this;
+    }
+
+    long[] toSortedArray() {
+        long[] result = Arrays.copyOf(heap, size);
+        Arrays.sort(result);
+        return result;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent] >= heap[i]) {
+                return;
+            }
+            swap(parent, i);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int largest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < size && heap[left] > heap[largest]) {
+                largest = left;
+            }
+            if (right < size && heap[right] > heap[largest]) {
+                largest = right;
+            }
+            if (largest == i) {
+                return;
+            }
+            swap(largest, i);
+            i = largest;
+        }
+    }
+
+    private void swap(int i, int j) {
+        long tmp = heap[i];
+        heap[i] = heap[j];
+        heap[j] = tmp;
+    }
+}
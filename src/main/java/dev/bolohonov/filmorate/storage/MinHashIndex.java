@@ -0,0 +1,209 @@
+package dev.bolohonov.filmorate.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * MinHash-сигнатуры множеств понравившихся фильмов и LSH-корзины по полосам сигнатуры.
+ * Пользователи, совпавшие хотя бы в одной полосе, становятся кандидатами в соседи; больше полос
+ * дают выше полноту, больше строк в полосе - меньше кандидатов и быстрее ответ.
+ * Индекс ведется только в приближенном режиме рекомендаций.
+ */
+@Slf4j
+@Component
+public class MinHashIndex {
+    private static final long SEED = 20220501L;
+
+    private final LikesMatrix likesMatrix;
+    private final boolean enabled;
+    private final int bands;
+    private final int rows;
+    private final int[] seeds;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, int[]> signatures = new HashMap<>();
+    private final Map<Long, RoaringBitmap> buckets = new HashMap<>();
+
+    @Autowired
+    public MinHashIndex(LikesMatrix likesMatrix,
+                        @Value("${filmorate.recommendations.mode:exact}") String mode,
+                        @Value("${filmorate.recommendations.lsh.bands:16}") int bands,
+                        @Value("${filmorate.recommendations.lsh.rows:4}") int rows) {
+        this(likesMatrix, "approximate".equalsIgnoreCase(mode), bands, rows);
+    }
+
+    MinHashIndex(LikesMatrix likesMatrix, boolean enabled, int bands, int rows) {
+        this.likesMatrix = likesMatrix;
+        this.enabled = enabled;
+        this.bands = bands;
+        this.rows = rows;
+        this.seeds = new Random(SEED).ints(bands * rows).toArray();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        likesMatrix.readLock().lock();
+        try {
+            signatures.clear();
+            buckets.clear();
+            for (int userId : likesMatrix.likingUsers()) {
+                int[] signature = emptySignature();
+                likesMatrix.filmsOf(userId).forEach((int filmId) -> addToSignature(signature, filmId));
+                signatures.put(userId, signature);
+                addToBuckets(userId, signature);
+            }
+            log.info("MinHash-индекс построен для {} пользователей, {} полос по {} строк",
+                    signatures.size(), bands, rows);
+        } finally {
+            likesMatrix.readLock().unlock();
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Добавляет фильм в сигнатуру пользователя; минимумы только уменьшаются, поэтому пересчет не нужен.
+     */
+    public void like(int userId, int filmId) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            int[] old = signatures.get(userId);
+            int[] signature = old == null ? emptySignature() : old.clone();
+            addToSignature(signature, filmId);
+            replace(userId, old, signature);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Пересчитывает сигнатуру пользователя по актуальному списку фильмов, например после удаления лайка.
+     */
+    public void update(int userId, int[] films) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            int[] old = signatures.get(userId);
+            if (films.length == 0) {
+                replace(userId, old, null);
+                return;
+            }
+            int[] signature = emptySignature();
+            for (int filmId : films) {
+                addToSignature(signature, filmId);
+            }
+            replace(userId, old, signature);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeUser(int userId) {
+        update(userId, new int[0]);
+    }
+
+    /**
+     * Пользователи, попавшие в одну корзину с данным хотя бы в одной полосе, без него самого.
+     */
+    public RoaringBitmap candidates(int userId) {
+        lock.readLock().lock();
+        try {
+            RoaringBitmap candidates = new RoaringBitmap();
+            int[] signature = signatures.get(userId);
+            if (signature == null) {
+                return candidates;
+            }
+            for (int band = 0; band < bands; band++) {
+                RoaringBitmap bucket = buckets.get(bucketKey(signature, band));
+                if (bucket != null) {
+                    candidates.or(bucket);
+                }
+            }
+            candidates.remove(userId);
+            return candidates;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void replace(int userId, int[] old, int[] signature) {
+        if (old != null) {
+            for (int band = 0; band < bands; band++) {
+                long key = bucketKey(old, band);
+                RoaringBitmap bucket = buckets.get(key);
+                if (bucket != null) {
+                    bucket.remove(userId);
+                    if (bucket.isEmpty()) {
+                        buckets.remove(key);
+                    }
+                }
+            }
+        }
+        if (signature == null) {
+            signatures.remove(userId);
+            return;
+        }
+        signatures.put(userId, signature);
+        addToBuckets(userId, signature);
+    }
+
+    private void addToBuckets(int userId, int[] signature) {
+        for (int band = 0; band < bands; band++) {
+            buckets.computeIfAbsent(bucketKey(signature, band), k -> new RoaringBitmap()).add(userId);
+        }
+    }
+
+    private int[] emptySignature() {
+        int[] signature = new int[seeds.length];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        return signature;
+    }
+
+    private void addToSignature(int[] signature, int filmId) {
+        for (int i = 0; i < seeds.length; i++) {
+            signature[i] = Math.min(signature[i], hash(filmId ^ seeds[i]) & Integer.MAX_VALUE);
+        }
+    }
+
+    private long bucketKey(int[] signature, int band) {
+        int h = band;
+        for (int i = band * rows; i < (band + 1) * rows; i++) {
+            h = 31 * h + signature[i];
+        }
+        return ((long) band << 32) | (hash(h) & 0xffffffffL);
+    }
+
+    /**
+     * Финальное перемешивание MurmurHash3.
+     */
+    private static int hash(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
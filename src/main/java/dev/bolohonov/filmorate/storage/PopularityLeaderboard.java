@@ -0,0 +1,198 @@
+package dev.bolohonov.filmorate.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.IntConsumer;
+
+/**
+ * Рейтинг фильмов по лайкам в памяти. Счетчики лежат в примитивных массивах по id фильма,
+ * для каждого среза (все фильмы, жанр, год, жанр + год) поддерживается отсортированное множество,
+ * поэтому первые count фильмов читаются без обращения к базе.
+ */
+@Slf4j
+@Component
+public class PopularityLeaderboard {
+    private static final int NONE = 0;
+    private static final String SQL_SELECT_FILMS_WITH_LIKES =
+            "select f.id, f.release_year, fg.genre_id, " +
+                    "(select count(*) from likes l where l.film_id = f.id) as likes " +
+                    "from film f left join film_genre fg on fg.film_id = f.id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<Long, NavigableSet<Long>> slices = new ConcurrentHashMap<>();
+    private final List<IntConsumer> listeners = new CopyOnWriteArrayList<>();
+    private int[] likes = new int[0];
+    private int[] genres = new int[0];
+    private int[] years = new int[0];
+    private BitSet films = new BitSet();
+
+    public PopularityLeaderboard(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public synchronized void rebuild() {
+        slices.clear();
+        likes = new int[0];
+        genres = new int[0];
+        years = new int[0];
+        films = new BitSet();
+        jdbcTemplate.query(SQL_SELECT_FILMS_WITH_LIKES, rs -> {
+            int filmId = rs.getInt("id");
+            ensureCapacity(filmId);
+            likes[filmId] = rs.getInt("likes");
+            genres[filmId] = rs.getInt("genre_id");
+            years[filmId] = rs.getInt("release_year");
+            films.set(filmId);
+            index(filmId);
+        });
+        log.info("Рейтинг популярности построен для {} фильмов", films.cardinality());
+        films.stream().forEach(this::notifyListeners);
+    }
+
+    /**
+     * Слушатель получает id фильма после каждого изменения его числа лайков.
+     */
+    public void addListener(IntConsumer listener) {
+        listeners.add(listener);
+    }
+
+    public synchronized void addFilm(int filmId, int year) {
+        if (films.get(filmId)) {
+            updateFilm(filmId, year);
+            return;
+        }
+        ensureCapacity(filmId);
+        likes[filmId] = 0;
+        genres[filmId] = NONE;
+        years[filmId] = year;
+        films.set(filmId);
+        index(filmId);
+    }
+
+    public synchronized void updateFilm(int filmId, int year) {
+        if (!films.get(filmId)) {
+            addFilm(filmId, year);
+            return;
+        }
+        unindex(filmId);
+        years[filmId] = year;
+        index(filmId);
+    }
+
+    public synchronized void removeFilm(int filmId) {
+        if (!films.get(filmId)) {
+            return;
+        }
+        unindex(filmId);
+        films.clear(filmId);
+        likes[filmId] = 0;
+        notifyListeners(filmId);
+    }
+
+    public synchronized void like(int filmId) {
+        changeLikes(filmId, 1);
+    }
+
+    public synchronized void unlike(int filmId) {
+        changeLikes(filmId, -1);
+    }
+
+    public int getLikesCount(int filmId) {
+        int[] counts = likes;
+        return filmId >= 0 && filmId < counts.length ? counts[filmId] : 0;
+    }
+
+    /**
+     * Id самых популярных фильмов среза; genreId и year равные 0 означают отсутствие фильтра.
+     */
+    public List<Integer> getTop(int count, int genreId, int year) {
+        NavigableSet<Long> slice = slices.get(sliceKey(genreId, year));
+        if (slice == null) {
+            return Collections.emptyList();
+        }
+        List<Integer> top = new ArrayList<>(Math.min(count, slice.size()));
+        for (Long entry : slice) {
+            if (top.size() >= count) {
+                break;
+            }
+            top.add(filmId(entry));
+        }
+        return top;
+    }
+
+    private void changeLikes(int filmId, int delta) {
+        if (!films.get(filmId)) {
+            return;
+        }
+        unindex(filmId);
+        likes[filmId] = Math.max(0, likes[filmId] + delta);
+        index(filmId);
+        notifyListeners(filmId);
+    }
+
+    private void notifyListeners(int filmId) {
+        for (IntConsumer listener : listeners) {
+            listener.accept(filmId);
+        }
+    }
+
+    private void index(int filmId) {
+        long entry = entry(filmId);
+        for (long key : sliceKeys(filmId)) {
+            slices.computeIfAbsent(key, k -> new ConcurrentSkipListSet<>()).add(entry);
+        }
+    }
+
+    private void unindex(int filmId) {
+        long entry = entry(filmId);
+        for (long key : sliceKeys(filmId)) {
+            NavigableSet<Long> slice = slices.get(key);
+            if (slice != null) {
+                slice.remove(entry);
+            }
+        }
+    }
+
+    private long[] sliceKeys(int filmId) {
+        int genreId = genres[filmId];
+        int year = years[filmId];
+        if (genreId == NONE) {
+            return new long[]{sliceKey(NONE, NONE), sliceKey(NONE, year)};
+        }
+        return new long[]{sliceKey(NONE, NONE), sliceKey(NONE, year), sliceKey(genreId, NONE),
+                sliceKey(genreId, year)};
+    }
+
+    private static long sliceKey(int genreId, int year) {
+        return ((long) genreId << 32) | (year & 0xffffffffL);
+    }
+
+    /**
+     * Ключ упорядочивает фильмы по убыванию лайков, при равенстве по возрастанию id.
+     */
+    private long entry(int filmId) {
+        return ((long) (Integer.MAX_VALUE - likes[filmId]) << 32) | filmId;
+    }
+
+    private static int filmId(long entry) {
+        return (int) entry;
+    }
+
+    private void ensureCapacity(int filmId) {
+        if (filmId < likes.length) {
+            return;
+        }
+        int capacity = Math.max(filmId + 1, likes.length * 2);
+        likes = Arrays.copyOf(likes, capacity);
+        genres = Arrays.copyOf(genres, capacity);
+        years = Arrays.copyOf(years, capacity);
+    }
+}
@@ -0,0 +1,274 @@
+package dev.bolohonov.filmorate.storage;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.IntFunction;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Префиксное дерево по началам слов: строка индексируется с начала каждого слова,
+ * поэтому "Крестный отец" находится и по "крес", и по "отец". Термы обрезаются до MAX_TERM_LENGTH
+ * символов, так что на слово приходится не больше MAX_TERM_LENGTH узлов.
+ * Каждый узел хранит TOP_K лучших id своего поддерева по весу (при равенстве по имени, затем по id).
+ * Изменение строки или веса сбрасывает топ узлов на путях ее термов, топ пересчитывается при следующем
+ * запросе из топов дочерних узлов, поэтому запрос стоит O(длина префикса + TOP_K), а не размера поддерева.
+ * put и remove требуют исключительного доступа, синхронизация на стороне владельца; touch и top можно
+ * выполнять параллельно друг с другом.
+ */
+class PrefixIndex {
+    static final int MAX_TERM_LENGTH = 32;
+    static final int TOP_K = 20;
+
+    private final IntUnaryOperator weight;
+    private final IntFunction<String> name;
+    private final Node root = new Node();
+    private final Map<Integer, String> texts = new HashMap<>();
+
+    PrefixIndex(IntUnaryOperator weight, IntFunction<String> name) {
+        this.weight = weight;
+        this.name = name;
+    }
+
+    void put(int id, String text) {
+        remove(id);
+        String normalized = normalize(text);
+        texts.put(id, normalized);
+        for (String term : terms(normalized)) {
+            Node node = root;
+            node.invalidate();
+            for (int i = 0; i < term.length(); i++) {
+                node = node.childOrCreate(term.charAt(i));
+                node.invalidate();
+            }
+            node.ids.add(id);
+        }
+    }
+
+    void remove(int id) {
+        String old = texts.remove(id);
+        if (old == null) {
+            return;
+        }
+        for (String term : terms(old)) {
+            Node[] path = path(term);
+            if (path == null) {
+                continue;
+            }
+            path[term.length()].ids.remove(id);
+            for (int depth = term.length(); depth >= 0; depth--) {
+                path[depth].invalidate();
+                if (depth > 0 && path[depth].isEmpty()) {
+                    path[depth - 1].removeChild(term.charAt(depth - 1));
+                }
+            }
+        }
+    }
+
+    /**
+     * Вес id изменился: сбрасывает топ узлов на путях его термов, от листа к корню. Так запрос,
+     * увидевший сброшенный топ узла, пересчитает его уже из сброшенных топов дочерних узлов.
+     */
+    void touch(int id) {
+        String text = texts.get(id);
+        if (text == null) {
+            return;
+        }
+        for (String term : terms(text)) {
+            Node[] path = path(term);
+            if (path != null) {
+                for (int depth = path.length - 1; depth >= 0; depth--) {
+                    path[depth].invalidate();
+                }
+            }
+        }
+    }
+
+    /**
+     * До count id, у которых какое-либо слово начинается с prefix, в порядке убывания веса.
+     * При count больше TOP_K или префиксе длиннее MAX_TERM_LENGTH обходится все поддерево.
+     */
+    List<Integer> top(String prefix, int count) {
+        String normalized = normalize(prefix);
+        Node node = root;
+        for (int i = 0; i < Math.min(normalized.length(), MAX_TERM_LENGTH) && node != null; i++) {
+            node = node.child(normalized.charAt(i));
+        }
+        if (node == null) {
+            return Collections.emptyList();
+        }
+        int[] ranked;
+        if (normalized.length() > MAX_TERM_LENGTH) {
+            Set<Integer> ids = new HashSet<>();
+            for (Integer id : node.ids) {
+                if (hasTermStartingWith(texts.get(id), normalized)) {
+                    ids.add(id);
+                }
+            }
+            ranked = rank(ids, count);
+        } else if (count <= TOP_K) {
+            ranked = topOf(node);
+        } else {
+            Set<Integer> ids = new HashSet<>();
+            collect(node, ids);
+            ranked = rank(ids, count);
+        }
+        List<Integer> result = new ArrayList<>(Math.min(count, ranked.length));
+        for (int i = 0; i < Math.min(count, ranked.length); i++) {
+            result.add(ranked[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Пересчитанный топ сохраняется, только если узел не сбросили заново во время пересчета:
+     * иначе топ мог быть собран по устаревшим весам.
+     */
+    private int[] topOf(Node node) {
+        Top cached = node.top;
+        if (cached.ids != null) {
+            return cached.ids;
+        }
+        Set<Integer> candidates = new HashSet<>(node.ids);
+        for (int i = 0; i < node.size; i++) {
+            for (int id : topOf(node.children[i])) {
+                candidates.add(id);
+            }
+        }
+        int[] ids = rank(candidates, TOP_K);
+        Node.TOP.compareAndSet(node, cached, new Top(ids));
+        return ids;
+    }
+
+    /**
+     * Веса снимаются один раз до сортировки, чтобы параллельное изменение не нарушило порядок сравнения.
+     */
+    private int[] rank(Set<Integer> ids, int limit) {
+        Map<Integer, Integer> weights = new HashMap<>();
+        for (Integer id : ids) {
+            weights.put(id, weight.applyAsInt(id));
+        }
+        List<Integer> sorted = new ArrayList<>(ids);
+        sorted.sort(Comparator.comparingInt((Integer id) -> weights.get(id)).reversed()
+                .thenComparing(id -> String.valueOf(name.apply(id)))
+                .thenComparingInt(id -> id));
+        return sorted.stream().limit(limit).mapToInt(Integer::intValue).toArray();
+    }
+
+    private static void collect(Node node, Set<Integer> ids) {
+        ids.addAll(node.ids);
+        for (int i = 0; i < node.size; i++) {
+            collect(node.children[i], ids);
+        }
+    }
+
+    /**
+     * Узлы от корня до конца терма или null, если терма нет в дереве.
+     */
+    private Node[] path(String term) {
+        Node[] path = new Node[term.length() + 1];
+        path[0] = root;
+        for (int i = 0; i < term.length(); i++) {
+            path[i + 1] = path[i].child(term.charAt(i));
+            if (path[i + 1] == null) {
+                return null;
+            }
+        }
+        return path;
+    }
+
+    private static boolean hasTermStartingWith(String text, String prefix) {
+        for (int i = 0; i < text.length(); i++) {
+            if (isWordStart(text, i) && text.startsWith(prefix, i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<String> terms(String text) {
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < text.length(); i++) {
+            if (isWordStart(text, i)) {
+                result.add(text.substring(i, Math.min(text.length(), i + MAX_TERM_LENGTH)));
+            }
+        }
+        return result;
+    }
+
+    private static boolean isWordStart(String text, int i) {
+        return !Character.isWhitespace(text.charAt(i)) && (i == 0 || Character.isWhitespace(text.charAt(i - 1)));
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Кеш топа узла; ids равен null, пока топ не пересчитан. Каждый сброс создает новый объект,
+     * поэтому сохранение пересчитанного топа сравнивает ссылки, а не значения.
+     */
+    private static final class Top {
+        private final int[] ids;
+
+        Top(int[] ids) {
+            this.ids = ids;
+        }
+    }
+
+    /**
+     * Узел дерева: дочерние узлы в отсортированных по символу массивах, id термов, заканчивающихся здесь,
+     * и кеш топа поддерева.
+     */
+    private static final class Node {
+        private static final AtomicReferenceFieldUpdater<Node, Top> TOP =
+                AtomicReferenceFieldUpdater.newUpdater(Node.class, Top.class, "top");
+
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private int size;
+        private final Set<Integer> ids = new HashSet<>();
+        private volatile Top top = new Top(null);
+
+        void invalidate() {
+            top = new Top(null);
+        }
+
+        Node child(char c) {
+            int pos = Arrays.binarySearch(keys, 0, size, c);
+            return pos >= 0 ? children[pos] : null;
+        }
+
+        Node childOrCreate(char c) {
+            int pos = Arrays.binarySearch(keys, 0, size, c);
+            if (pos >= 0) {
+                return children[pos];
+            }
+            pos = -pos - 1;
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, Math.max(2, size * 2));
+                children = Arrays.copyOf(children, keys.length);
+            }
+            System.arraycopy(keys, pos, keys, pos + 1, size - pos);
+            System.arraycopy(children, pos, children, pos + 1, size - pos);
+            Node node = new Node();
+            keys[pos] = c;
+            children[pos] = node;
+            size++;
+            return node;
+        }
+
+        void removeChild(char c) {
+            int pos = Arrays.binarySearch(keys, 0, size, c);
+            if (pos < 0) {
+                return;
+            }
+            System.arraycopy(keys, pos + 1, keys, pos, size - pos - 1);
+            System.arraycopy(children, pos + 1, children, pos, size - pos - 1);
+            children[--size] = null;
+        }
+
+        boolean isEmpty() {
+            return size == 0 && ids.isEmpty();
+        }
+    }
+}
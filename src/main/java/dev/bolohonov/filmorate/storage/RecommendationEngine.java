@@ -0,0 +1,224 @@
+package dev.bolohonov.filmorate.storage;
+
+import dev.bolohonov.filmorate.exceptions.FunctionalityNotSupportedException;
+import dev.bolohonov.filmorate.exceptions.RecommendationNotFoundException;
+import dev.bolohonov.filmorate.model.RecallReport;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Коллаборативная фильтрация по матрице лайков в памяти. Соседи пользователя упорядочены по числу
+ * общих лайков (пересечение битмапов), при равенстве по id; рекомендуются непросмотренные фильмы
+ * первого соседа, у которого они есть.
+ * При parallelism больше 1 кандидаты делятся на части и оцениваются в ForkJoinPool, результат
+ * совпадает с последовательным режимом, так как порядок соседей полностью определен ключом.
+ * В приближенном режиме кандидаты берутся из LSH-корзин {@link MinHashIndex} и затем оцениваются точно.
+ */
+@Slf4j
+@Component
+public class RecommendationEngine {
+    private static final int NEIGHBOURS = 64;
+    private static final int CHUNK_SIZE = 4096;
+
+    private final LikesMatrix likesMatrix;
+    private final MinHashIndex minHashIndex;
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+
+    @Autowired
+    public RecommendationEngine(LikesMatrix likesMatrix, MinHashIndex minHashIndex,
+                                @Value("${filmorate.recommendations.parallelism:0}") int parallelism) {
+        this(likesMatrix, minHashIndex, parallelism, CHUNK_SIZE);
+    }
+
+    /**
+     * @param parallelism число потоков оценки; 0 - по числу процессоров, 1 - последовательный режим
+     */
+    RecommendationEngine(LikesMatrix likesMatrix, MinHashIndex minHashIndex, int parallelism, int chunkSize) {
+        this.likesMatrix = likesMatrix;
+        this.minHashIndex = minHashIndex;
+        this.chunkSize = chunkSize;
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.pool = threads > 1 ? new ForkJoinPool(threads) : null;
+        log.info("Оценка соседей для рекомендаций в {} потоках", threads);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Id рекомендованных фильмов по возрастанию.
+     */
+    public int[] recommend(int userId) {
+        likesMatrix.readLock().lock();
+        try {
+            return recommend(userId, minHashIndex.isEnabled());
+        } finally {
+            likesMatrix.readLock().unlock();
+        }
+    }
+
+    /**
+     * Сравнивает приближенный режим с точным на каждом step-м пользователе с лайками: доля точных top-K соседей,
+     * найденных приближенно, доля совпавших рекомендаций и доля оцененных кандидатов.
+     */
+    public RecallReport measureRecall(int sample) {
+        if (!minHashIndex.isEnabled()) {
+            throw new FunctionalityNotSupportedException("Приближенный режим рекомендаций выключен");
+        }
+        likesMatrix.readLock().lock();
+        try {
+            int[] users = likesMatrix.likingUsers();
+            int step = Math.max(1, users.length / Math.max(1, sample));
+            int measured = 0;
+            double neighbourRecall = 0;
+            int matches = 0;
+            long exactCandidates = 0;
+            long approximateCandidates = 0;
+            for (int i = 0; i < users.length && measured < sample; i += step) {
+                int userId = users[i];
+                RoaringBitmap userFilms = likesMatrix.filmsOf(userId);
+                int[] exact = candidates(userId, userFilms, false);
+                if (exact.length == 0) {
+                    continue;
+                }
+                int[] approximate = candidates(userId, userFilms, true);
+                long[] exactTop = rankNeighbours(exact, userFilms, Math.min(NEIGHBOURS, exact.length));
+                long[] approximateTop = approximate.length == 0 ? new long[0]
+                        : rankNeighbours(approximate, userFilms, Math.min(NEIGHBOURS, approximate.length));
+                neighbourRecall += (double) countCommon(exactTop, approximateTop) / exactTop.length;
+                if (Arrays.equals(recommendOrEmpty(userId, false), recommendOrEmpty(userId, true))) {
+                    matches++;
+                }
+                exactCandidates += exact.length;
+                approximateCandidates += approximate.length;
+                measured++;
+            }
+            if (measured == 0) {
+                return new RecallReport(0, 0, 0, 0);
+            }
+            return new RecallReport(measured, neighbourRecall / measured, (double) matches / measured,
+                    (double) approximateCandidates / exactCandidates);
+        } finally {
+            likesMatrix.readLock().unlock();
+        }
+    }
+
+    private int[] recommend(int userId, boolean approximate) {
+        RoaringBitmap userFilms = likesMatrix.filmsOf(userId);
+        int[] candidates = candidates(userId, userFilms, approximate);
+        if (candidates.length == 0) {
+            throw new RecommendationNotFoundException("Пользователи с похожими интересами не найдены");
+        }
+        for (int k = NEIGHBOURS; ; k *= 2) {
+            long[] neighbours = rankNeighbours(candidates, userFilms, Math.min(k, candidates.length));
+            for (long neighbour : neighbours) {
+                RoaringBitmap unseen = RoaringBitmap.andNot(likesMatrix.filmsOf(userId(neighbour)), userFilms);
+                if (!unseen.isEmpty()) {
+                    return unseen.toArray();
+                }
+            }
+            if (neighbours.length < k || k >= candidates.length) {
+                break;
+            }
+        }
+        throw new RecommendationNotFoundException("Пока мы не можем вам ничего рекомендовать");
+    }
+
+    private int[] recommendOrEmpty(int userId, boolean approximate) {
+        try {
+            return recommend(userId, approximate);
+        } catch (RecommendationNotFoundException e) {
+            return new int[0];
+        }
+    }
+
+    private int[] candidates(int userId, RoaringBitmap userFilms, boolean approximate) {
+        if (approximate) {
+            return minHashIndex.candidates(userId).toArray();
+        }
+        RoaringBitmap candidates = new RoaringBitmap();
+        userFilms.forEach((int filmId) -> candidates.or(likesMatrix.usersOf(filmId)));
+        candidates.remove(userId);
+        return candidates.toArray();
+    }
+
+    private static int countCommon(long[] exact, long[] approximate) {
+        RoaringBitmap found = new RoaringBitmap();
+        for (long entry : approximate) {
+            found.add(userId(entry));
+        }
+        int common = 0;
+        for (long entry : exact) {
+            if (found.contains(userId(entry))) {
+                common++;
+            }
+        }
+        return common;
+    }
+
+    private long[] rankNeighbours(int[] candidates, RoaringBitmap userFilms, int k) {
+        ScoreTask task = new ScoreTask(candidates, 0, candidates.length, userFilms, k);
+        LongTopK top = pool == null || candidates.length <= chunkSize ? task.compute() : pool.invoke(task);
+        return top.toSortedArray();
+    }
+
+    /**
+     * Ключ упорядочивает соседей по убыванию числа общих лайков, при равенстве по возрастанию id.
+     */
+    private static long entry(int overlap, int userId) {
+        return ((long) (Integer.MAX_VALUE - overlap) << 32) | userId;
+    }
+
+    private static int userId(long entry) {
+        return (int) entry;
+    }
+
+    private class ScoreTask extends RecursiveTask<LongTopK> {
+        private final int[] candidates;
+        private final int from;
+        private final int to;
+        private final RoaringBitmap userFilms;
+        private final int k;
+
+        ScoreTask(int[] candidates, int from, int to, RoaringBitmap userFilms, int k) {
+            this.candidates = candidates;
+            this.from = from;
+            this.to = to;
+            this.userFilms = userFilms;
+            this.k = k;
+        }
+
+        @Override
+        protected LongTopK compute() {
+            if (pool != null && to - from > chunkSize) {
+                int middle = (from + to) >>> 1;
+                ScoreTask left = new ScoreTask(candidates, from, middle, userFilms, k);
+                left.fork();
+                LongTopK right = new ScoreTask(candidates, middle, to, userFilms, k).compute();
+                return left.join().merge(right);
+            }
+            LongTopK top = new LongTopK(k);
+            for (int i = from; i < to; i++) {
+                int candidate = candidates[i];
+                int overlap = RoaringBitmap.andCardinality(userFilms, likesMatrix.filmsOf(candidate));
+                if (overlap > 0) {
+                    top.offer(entry(overlap, candidate));
+                }
+            }
+            return top;
+        }
+    }
+}
@@ -27,6 +27,8 @@ public class ReviewDBStorage implements ReviewStorage {
     private static final String SQL_FOR_ADD_REVIEW_USEFUL = "INSERT INTO review_usefuls (review_id, user_id, useful) " +
             "VALUES (?, ?, ?);";
     private static final String SQL_FOR_GET_ALL_REVIEWS_BY_FILM_ID = "SELECT * FROM reviews WHERE film_id = ? LIMIT ?";
+    private static final String SQL_FOR_GET_REVIEWS_PAGE_BY_FILM_ID = "SELECT * FROM reviews " +
+            "WHERE film_id = ? AND review_id > ? ORDER BY review_id LIMIT ?";
     private static final String SQL_FOR_DELETE_REVIEW_USEFUL = "DELETE FROM review_usefuls WHERE review_id = ? " +
             "AND user_id = ? AND useful = ?";
     private static final String SQL_FOR_DELETE_REVIEW_BY_ID = "DELETE FROM reviews WHERE review_id = ?";
@@ -133,6 +135,11 @@ public class ReviewDBStorage implements ReviewStorage {
         return jdbcTemplate.query(SQL_FOR_GET_ALL_REVIEWS_BY_FILM_ID, this::mapRowToReview, filmId, count);
     }
 
+    @Override
+    public List<Review> getReviewsPageByFilmId(int filmId, int afterId, int limit) {
+        return jdbcTemplate.query(SQL_FOR_GET_REVIEWS_PAGE_BY_FILM_ID, this::mapRowToReview, filmId, afterId, limit);
+    }
+
     @Override
     public Review addReviewUseful(int reviewId, int userId, int value) {
         try {
@@ -56,6 +56,16 @@ public interface ReviewStorage {
      */
     List<Review> getAllReviewsByFilmId(int filmId, int count);
 
+    /**
+     * Получить страницу отзывов по id фильма в порядке id отзыва
+     *
+     * @param filmId
+     * @param afterId id последнего отзыва предыдущей страницы, 0 для первой страницы
+     * @param limit
+     * @return
+     */
+    List<Review> getReviewsPageByFilmId(int filmId, int afterId, int limit);
+
     /**
      * Добавить лайк/дизлайк
      *
@@ -0,0 +1,148 @@
+package dev.bolohonov.filmorate.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.EncodedResource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Версионные миграции схемы из файлов {@code V<версия>__<описание>.sql}. Каждая миграция выполняется
+ * один раз в своей транзакции и записывается в schema_version вместе с контрольной суммой;
+ * изменение уже примененного файла останавливает запуск. Базовая миграция написана через IF NOT EXISTS,
+ * поэтому на базе, созданной прежним schema.sql, она только фиксирует версию.
+ * Выполняется раньше инициализации spring.sql.init и всех бинов, работающих с JdbcTemplate.
+ */
+@Slf4j
+@Component
+public class SchemaMigrator implements InitializingBean {
+    private static final Pattern FILE_NAME = Pattern.compile("V(\\d+)__(.+)\\.sql");
+
+    private static final String SQL_CREATE_VERSION_TABLE =
+            "create table if not exists schema_version (" +
+                    "version int primary key, " +
+                    "description varchar(200) not null, " +
+                    "checksum bigint not null, " +
+                    "installed_on timestamp not null, " +
+                    "execution_ms bigint not null)";
+    private static final String SQL_SELECT_APPLIED = "select version, checksum from schema_version";
+    private static final String SQL_INSERT_VERSION =
+            "insert into schema_version (version, description, checksum, installed_on, execution_ms) " +
+                    "values (?, ?, ?, ?, ?)";
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final String locations;
+
+    public SchemaMigrator(DataSource dataSource,
+                          @Value("${filmorate.migrations.locations:classpath*:db/migration/V*__*.sql}")
+                          String locations) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        this.locations = locations;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws IOException {
+        migrate();
+    }
+
+    public int migrate() throws IOException {
+        jdbcTemplate.execute(SQL_CREATE_VERSION_TABLE);
+        Map<Integer, Long> applied = new HashMap<>();
+        jdbcTemplate.query(SQL_SELECT_APPLIED, rs -> {
+            applied.put(rs.getInt("version"), rs.getLong("checksum"));
+        });
+        int count = 0;
+        for (Migration migration : findMigrations()) {
+            Long checksum = applied.get(migration.version);
+            if (checksum != null) {
+                if (checksum != migration.checksum) {
+                    throw new IllegalStateException(String.format(
+                            "Миграция V%d (%s) изменена после применения", migration.version, migration.description));
+                }
+                continue;
+            }
+            apply(migration);
+            count++;
+        }
+        log.info("Схема базы в актуальной версии, применено миграций: {}", count);
+        return count;
+    }
+
+    private void apply(Migration migration) {
+        long start = System.currentTimeMillis();
+        transactionTemplate.executeWithoutResult(status -> {
+            Connection connection = DataSourceUtils.getConnection(dataSource);
+            ScriptUtils.executeSqlScript(connection, new EncodedResource(migration.resource, StandardCharsets.UTF_8));
+            jdbcTemplate.update(SQL_INSERT_VERSION, migration.version, migration.description, migration.checksum,
+                    Timestamp.valueOf(LocalDateTime.now()), System.currentTimeMillis() - start);
+        });
+        log.info("Применена миграция V{} ({})", migration.version, migration.description);
+    }
+
+    private List<Migration> findMigrations() throws IOException {
+        Map<Integer, Migration> migrations = new TreeMap<>();
+        for (Resource resource : new PathMatchingResourcePatternResolver().getResources(locations)) {
+            Matcher matcher = FILE_NAME.matcher(String.valueOf(resource.getFilename()));
+            if (!matcher.matches()) {
+                continue;
+            }
+            Migration migration = new Migration(Integer.parseInt(matcher.group(1)),
+                    matcher.group(2).replace('_', ' '), resource, checksum(resource));
+            Migration previous = migrations.put(migration.version, migration);
+            if (previous != null && previous.checksum != migration.checksum) {
+                throw new IllegalStateException(String.format("Две разные миграции с версией V%d: %s и %s",
+                        migration.version, previous.description, migration.description));
+            }
+        }
+        return new ArrayList<>(migrations.values());
+    }
+
+    /**
+     * CRC32 текста миграции без учета различий в переводах строк.
+     */
+    private static long checksum(Resource resource) throws IOException {
+        try (InputStream input = resource.getInputStream()) {
+            String text = new String(input.readAllBytes(), StandardCharsets.UTF_8).replace("\r\n", "\n");
+            CRC32 crc = new CRC32();
+            crc.update(text.getBytes(StandardCharsets.UTF_8));
+            return crc.getValue();
+        }
+    }
+
+    private static final class Migration {
+        private final int version;
+        private final String description;
+        private final Resource resource;
+        private final long checksum;
+
+        private Migration(int version, String description, Resource resource, long checksum) {
+            this.version = version;
+            this.description = description;
+            this.resource = resource;
+            this.checksum = checksum;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package dev.bolohonov.filmorate.storage;
+
+import org.springframework.boot.sql.init.dependency.AbstractBeansOfTypeDatabaseInitializerDetector;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Регистрирует {@link SchemaMigrator} как инициализатор базы: бины с JdbcTemplate и скрипты
+ * spring.sql.init создаются только после применения миграций.
+ */
+class SchemaMigratorDetector extends AbstractBeansOfTypeDatabaseInitializerDetector {
+
+    @Override
+    protected Set<Class<?>> getDatabaseInitializerBeanTypes() {
+        return Collections.singleton(SchemaMigrator.class);
+    }
+
+    @Override
+    public int getOrder() {
+        return 1;
+    }
+}
@@ -0,0 +1,140 @@
+package dev.bolohonov.filmorate.storage;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Инвертированный индекс триграмм по строкам с целочисленными id.
+ * Поиск повторяет семантику {@code text ILIKE '%query%'}: кандидаты отбираются пересечением
+ * списков триграмм литеральных частей запроса и затем проверяются регулярным выражением.
+ * Класс не потокобезопасен, синхронизация на стороне владельца.
+ */
+class TrigramIndex {
+    private final Map<Integer, String> texts = new HashMap<>();
+    private final Map<Long, Set<Integer>> postings = new HashMap<>();
+
+    void put(int id, String text) {
+        remove(id);
+        String normalized = normalize(text);
+        texts.put(id, normalized);
+        for (long trigram : trigrams(normalized)) {
+            postings.computeIfAbsent(trigram, t -> new HashSet<>()).add(id);
+        }
+    }
+
+    void remove(int id) {
+        String old = texts.remove(id);
+        if (old == null) {
+            return;
+        }
+        for (long trigram : trigrams(old)) {
+            Set<Integer> ids = postings.get(trigram);
+            if (ids != null) {
+                ids.remove(id);
+                if (ids.isEmpty()) {
+                    postings.remove(trigram);
+                }
+            }
+        }
+    }
+
+    Set<Integer> find(String query) {
+        LikePattern pattern = LikePattern.containing(query);
+        Set<Integer> candidates = candidates(pattern);
+        Set<Integer> result = new HashSet<>();
+        for (Integer id : candidates) {
+            if (pattern.matches(texts.get(id))) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    private Set<Integer> candidates(LikePattern pattern) {
+        List<Set<Integer>> lists = new ArrayList<>();
+        for (String literal : pattern.literals) {
+            for (long trigram : trigrams(literal)) {
+                Set<Integer> ids = postings.get(trigram);
+                if (ids == null) {
+                    return Collections.emptySet();
+                }
+                lists.add(ids);
+            }
+        }
+        if (lists.isEmpty()) {
+            return texts.keySet();
+        }
+        lists.sort(Comparator.comparingInt(Set::size));
+        Set<Integer> smallest = lists.get(0);
+        Set<Integer> result = new HashSet<>();
+        for (Integer id : smallest) {
+            boolean inAll = true;
+            for (int i = 1; i < lists.size() && inAll; i++) {
+                inAll = lists.get(i).contains(id);
+            }
+            if (inAll) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    private static Set<Long> trigrams(String text) {
+        Set<Long> result = new HashSet<>();
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            result.add(((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2));
+        }
+        return result;
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Шаблон LIKE с символами {@code %}, {@code _} и экранированием обратной косой чертой, как в H2.
+     */
+    private static final class LikePattern {
+        private final Pattern regex;
+        private final List<String> literals;
+
+        private LikePattern(Pattern regex, List<String> literals) {
+            this.regex = regex;
+            this.literals = literals;
+        }
+
+        static LikePattern containing(String query) {
+            String normalized = normalize(query);
+            StringBuilder regex = new StringBuilder(".*");
+            List<String> literals = new ArrayList<>();
+            StringBuilder literal = new StringBuilder();
+            for (int i = 0; i < normalized.length(); i++) {
+                char c = normalized.charAt(i);
+                if (c == '\\' && i + 1 < normalized.length()) {
+                    c = normalized.charAt(++i);
+                } else if (c == '%' || c == '_') {
+                    regex.append(c == '%' ? ".*" : ".");
+                    flush(literal, literals);
+                    continue;
+                }
+                regex.append(Pattern.quote(String.valueOf(c)));
+                literal.append(c);
+            }
+            flush(literal, literals);
+            regex.append(".*");
+            return new LikePattern(Pattern.compile(regex.toString(),
+                    Pattern.DOTALL | Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE), literals);
+        }
+
+        boolean matches(String text) {
+            return text != null && regex.matcher(text).matches();
+        }
+
+        private static void flush(StringBuilder literal, List<String> literals) {
+            if (literal.length() > 0) {
+                literals.add(literal.toString());
+                literal.setLength(0);
+            }
+        }
+    }
+}
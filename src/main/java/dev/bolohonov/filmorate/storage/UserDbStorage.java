@@ -7,26 +7,43 @@ import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Collection;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 @Slf4j
 @Component("userDbStorage")
 public class UserDbStorage implements UserStorage {
     private final JdbcTemplate jdbcTemplate;
+    private final PopularityLeaderboard leaderboard;
+    private final LikesMatrix likesMatrix;
+    private final CoLikeMatrix coLikeMatrix;
+    private final MinHashIndex minHashIndex;
+    private final IdRegistry idRegistry;
+    private final FriendGraph friendGraph;
+    private static final int STREAM_PAGE_SIZE = 1000;
     private static final String SQL_SELECT =
             "select id, name, login, email, birthday from user_filmorate";
+    private static final String SQL_SELECT_PAGE =
+            "select id, name, login, email, birthday from user_filmorate where id > ? order by id limit ?";
     private static final String SQL_INSERT =
             "insert into user_filmorate (name, login, email, birthday) " +
             "values (?, ?, ?, ?)";
     private static final String SQL_DELETE =
             "delete from user_filmorate where id = ?";
+    private static final String SQL_SELECT_LIKED_FILMS =
+            "select film_id from likes where user_id = ?";
+    private static final String SQL_DECREMENT_LIKES_COUNT_OF_LIKED_FILMS =
+            "update film set likes_count = likes_count - 1 " +
+                    "where id in (select film_id from likes where user_id = ?) and likes_count > 0";
     private static final String SQL_UPDATE =
             "update user_filmorate set name = ?, login = ?, email = ?, birthday = ? where id = ?";
     private static final String SQL_SELECT_FIND_USER =
@@ -34,8 +51,17 @@ public class UserDbStorage implements UserStorage {
                     "from user_filmorate where id = ?";
 
 
-    public UserDbStorage(JdbcTemplate jdbcTemplate) {
+    public UserDbStorage(JdbcTemplate jdbcTemplate, PopularityLeaderboard leaderboard,
+                         LikesMatrix likesMatrix, CoLikeMatrix coLikeMatrix,
+                         MinHashIndex minHashIndex, IdRegistry idRegistry,
+                         FriendGraph friendGraph) {
         this.jdbcTemplate = jdbcTemplate;
+        this.leaderboard = leaderboard;
+        this.likesMatrix = likesMatrix;
+        this.coLikeMatrix = coLikeMatrix;
+        this.minHashIndex = minHashIndex;
+        this.idRegistry = idRegistry;
+        this.friendGraph = friendGraph;
     }
 
     @Override
@@ -43,6 +69,28 @@ public class UserDbStorage implements UserStorage {
         return jdbcTemplate.query(SQL_SELECT, this::mapRowToUser);
     }
 
+    @Override
+    public List<User> getUsersPage(int afterId, int limit) {
+        return jdbcTemplate.query(SQL_SELECT_PAGE, this::mapRowToUser, afterId, limit);
+    }
+
+    /**
+     * Читает пользователей страницами по id; запись ответа идет после завершения запроса страницы,
+     * а не внутри открытого курсора.
+     */
+    @Override
+    public void streamUsers(Consumer<User> consumer) {
+        int afterId = 0;
+        List<User> page;
+        do {
+            page = getUsersPage(afterId, STREAM_PAGE_SIZE);
+            page.forEach(consumer);
+            if (!page.isEmpty()) {
+                afterId = page.get(page.size() - 1).getId();
+            }
+        } while (page.size() == STREAM_PAGE_SIZE);
+    }
+
     @Override
     public User addUser(User user) {
         KeyHolder keyHolder = new GeneratedKeyHolder();
@@ -55,12 +103,24 @@ public class UserDbStorage implements UserStorage {
                 return stmt;
             }, keyHolder);
             user.setId(Objects.requireNonNull(keyHolder.getKey()).intValue());
+            idRegistry.addUser(user.getId());
         return user;
     }
 
     @Override
+    @Transactional
     public void deleteUser(Integer id) {
+        List<Integer> likedFilms = jdbcTemplate.queryForList(SQL_SELECT_LIKED_FILMS, Integer.class, id);
+        jdbcTemplate.update(SQL_DECREMENT_LIKES_COUNT_OF_LIKED_FILMS, id);
         jdbcTemplate.update(SQL_DELETE, id);
+        likedFilms.forEach(leaderboard::unlike);
+        synchronized (likesMatrix.userLock(id)) {
+            coLikeMatrix.removeUser(likesMatrix.getFilms(id));
+            likesMatrix.removeUser(id);
+            minHashIndex.removeUser(id);
+        }
+        idRegistry.removeUser(id);
+        friendGraph.removeUser(id);
     }
 
     @Override
@@ -3,11 +3,17 @@ package dev.bolohonov.filmorate.storage;
 import dev.bolohonov.filmorate.model.User;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface UserStorage {
     Collection<User> getUsers();
 
+    void streamUsers(Consumer<User> consumer);
+
+    List<User> getUsersPage(int afterId, int limit);
+
     User addUser(User user);
 
     void deleteUser(Integer id);
@@ -1,12 +0,0 @@
-INSERT INTO mpa (name) VALUES ('G');
-INSERT INTO mpa (name) VALUES ('PG');
-INSERT INTO mpa (name) VALUES ('PG_13');
-INSERT INTO mpa (name) VALUES ('R');
-INSERT INTO mpa (name) VALUES ('NC_17');
-
-INSERT INTO genre (name) VALUES ('Комедия');
-INSERT INTO genre (name) VALUES ('Драма');
-INSERT INTO genre (name) VALUES ('Мультфильм');
-INSERT INTO genre (name) VALUES ('Ужасы');
-INSERT INTO genre (name) VALUES ('Боевик');
-INSERT INTO genre (name) VALUES ('Мелодрама');
\ No newline at end of file
@@ -23,9 +23,13 @@ CREATE TABLE IF NOT EXISTS film
     duration     int,
     rate         int,
     mpa          int,
-    director_id  int references director(id)
+    director_id  int references director(id),
+    likes_count  int NOT NULL DEFAULT 0
 );
 
+ALTER TABLE film ADD COLUMN IF NOT EXISTS likes_count int NOT NULL DEFAULT 0;
+CREATE INDEX IF NOT EXISTS film_likes_count_idx ON film (likes_count DESC, id);
+
 CREATE TABLE IF NOT EXISTS Mpa
 (
     id    INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
@@ -54,7 +58,8 @@ ALTER TABLE friends
 CREATE TABLE IF NOT EXISTS likes
 (
     film_id int,
-    user_id int
+    user_id int,
+    CONSTRAINT pk_likes PRIMARY KEY (film_id, user_id)
 );
 
 ALTER TABLE likes
@@ -64,6 +69,13 @@ ALTER TABLE likes
     ADD CONSTRAINT IF NOT EXISTS user_id_to_user FOREIGN KEY (user_id)
         REFERENCES user_filmorate ON DELETE CASCADE;
 
+DELETE FROM likes WHERE film_id IS NULL OR user_id IS NULL;
+ALTER TABLE likes ALTER COLUMN film_id SET NOT NULL;
+ALTER TABLE likes ALTER COLUMN user_id SET NOT NULL;
+DELETE FROM likes l WHERE EXISTS (SELECT 1 FROM likes d
+    WHERE d.film_id = l.film_id AND d.user_id = l.user_id AND d._ROWID_ < l._ROWID_);
+ALTER TABLE likes ADD CONSTRAINT IF NOT EXISTS pk_likes PRIMARY KEY (film_id, user_id);
+
 CREATE TABLE IF NOT EXISTS genre
 (
     id   INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
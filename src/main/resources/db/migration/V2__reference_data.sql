@@ -0,0 +1,12 @@
+INSERT INTO mpa (name) SELECT 'G' WHERE NOT EXISTS (SELECT 1 FROM mpa WHERE name = 'G');
+INSERT INTO mpa (name) SELECT 'PG' WHERE NOT EXISTS (SELECT 1 FROM mpa WHERE name = 'PG');
+INSERT INTO mpa (name) SELECT 'PG_13' WHERE NOT EXISTS (SELECT 1 FROM mpa WHERE name = 'PG_13');
+INSERT INTO mpa (name) SELECT 'R' WHERE NOT EXISTS (SELECT 1 FROM mpa WHERE name = 'R');
+INSERT INTO mpa (name) SELECT 'NC_17' WHERE NOT EXISTS (SELECT 1 FROM mpa WHERE name = 'NC_17');
+
+INSERT INTO genre (name) SELECT 'Комедия' WHERE NOT EXISTS (SELECT 1 FROM genre WHERE name = 'Комедия');
+INSERT INTO genre (name) SELECT 'Драма' WHERE NOT EXISTS (SELECT 1 FROM genre WHERE name = 'Драма');
+INSERT INTO genre (name) SELECT 'Мультфильм' WHERE NOT EXISTS (SELECT 1 FROM genre WHERE name = 'Мультфильм');
+INSERT INTO genre (name) SELECT 'Ужасы' WHERE NOT EXISTS (SELECT 1 FROM genre WHERE name = 'Ужасы');
+INSERT INTO genre (name) SELECT 'Боевик' WHERE NOT EXISTS (SELECT 1 FROM genre WHERE name = 'Боевик');
+INSERT INTO genre (name) SELECT 'Мелодрама' WHERE NOT EXISTS (SELECT 1 FROM genre WHERE name = 'Мелодрама');
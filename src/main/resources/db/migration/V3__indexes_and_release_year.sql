@@ -0,0 +1,15 @@
+ALTER TABLE film ADD COLUMN IF NOT EXISTS release_year int GENERATED ALWAYS AS (YEAR(release_date));
+
+CREATE INDEX IF NOT EXISTS film_release_year_likes_count_idx ON film (release_year, likes_count DESC, id);
+CREATE INDEX IF NOT EXISTS film_director_idx ON film (director_id);
+CREATE INDEX IF NOT EXISTS film_genre_genre_idx ON film_genre (genre_id, film_id);
+
+CREATE INDEX IF NOT EXISTS likes_user_film_idx ON likes (user_id, film_id);
+
+CREATE INDEX IF NOT EXISTS friends_first_second_idx ON friends (first_user_id, second_user_id);
+CREATE INDEX IF NOT EXISTS friends_second_first_idx ON friends (second_user_id, first_user_id);
+
+CREATE INDEX IF NOT EXISTS event_user_time_idx ON event (user_id, event_time);
+CREATE INDEX IF NOT EXISTS event_user_entity_idx ON event (user_id, entity_id);
+
+CREATE INDEX IF NOT EXISTS reviews_film_idx ON reviews (film_id);
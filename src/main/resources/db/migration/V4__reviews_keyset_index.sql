@@ -0,0 +1,2 @@
+CREATE INDEX IF NOT EXISTS reviews_film_review_idx ON reviews (film_id, review_id);
+DROP INDEX IF EXISTS reviews_film_idx;
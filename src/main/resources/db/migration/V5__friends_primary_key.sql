@@ -0,0 +1,16 @@
+DELETE FROM friends WHERE first_user_id IS NULL OR second_user_id IS NULL;
+ALTER TABLE friends ALTER COLUMN first_user_id SET NOT NULL;
+ALTER TABLE friends ALTER COLUMN second_user_id SET NOT NULL;
+UPDATE friends f SET
+    accept_first = (SELECT BOOL_OR(d.accept_first) FROM friends d
+        WHERE d.first_user_id = f.first_user_id AND d.second_user_id = f.second_user_id),
+    accept_second = (SELECT BOOL_OR(d.accept_second) FROM friends d
+        WHERE d.first_user_id = f.first_user_id AND d.second_user_id = f.second_user_id);
+DELETE FROM friends f WHERE EXISTS (SELECT 1 FROM friends d
+    WHERE d.first_user_id = f.first_user_id AND d.second_user_id = f.second_user_id AND d._ROWID_ < f._ROWID_);
+UPDATE friends SET accept_first = COALESCE(accept_first, FALSE), accept_second = COALESCE(accept_second, FALSE);
+DELETE FROM friends WHERE NOT accept_first AND NOT accept_second;
+ALTER TABLE friends ALTER COLUMN accept_first SET NOT NULL;
+ALTER TABLE friends ALTER COLUMN accept_second SET NOT NULL;
+ALTER TABLE friends ADD CONSTRAINT IF NOT EXISTS pk_friends PRIMARY KEY (first_user_id, second_user_id);
+DROP INDEX IF EXISTS friends_first_second_idx;
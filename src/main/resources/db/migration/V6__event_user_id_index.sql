@@ -0,0 +1 @@
+CREATE INDEX IF NOT EXISTS event_user_id_idx ON event (user_id, id);
@@ -0,0 +1,68 @@
+package dev.bolohonov.filmorate.controllers;
+
+import com.jayway.jsonpath.JsonPath;
+import dev.bolohonov.filmorate.model.Event;
+import dev.bolohonov.filmorate.service.EventService;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@AutoConfigureMockMvc
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class EventControllerTest {
+
+    private final MockMvc mockMvc;
+    private final EventService eventService;
+
+    @Test
+    void feedWithoutParametersIsFirstPage() throws Exception {
+        List<Integer> expected = eventService.getFeedPage(1001, Integer.MAX_VALUE, Pages.DEFAULT_LIMIT).stream()
+                .map(Event::getId)
+                .collect(Collectors.toList());
+
+        MockHttpServletResponse response = mockMvc.perform(get("/users/1001/feed"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(Pages.NEXT_CURSOR))
+                .andReturn().getResponse();
+
+        assertThat(expected).isNotEmpty();
+        assertThat(JsonPath.<List<Integer>>read(response.getContentAsString(), "$[*].id"))
+                .isEqualTo(expected);
+    }
+
+    @Test
+    void fullFeedPageReturnsCursorForNextPage() throws Exception {
+        List<Integer> feed = eventService.getFeedPage(1001, Integer.MAX_VALUE, Pages.DEFAULT_LIMIT).stream()
+                .map(Event::getId)
+                .collect(Collectors.toList());
+
+        MockHttpServletResponse first = mockMvc.perform(get("/users/1001/feed?limit=1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(Pages.NEXT_CURSOR, String.valueOf(feed.get(0))))
+                .andReturn().getResponse();
+        MockHttpServletResponse second = mockMvc.perform(get("/users/1001/feed?limit=1&before="
+                        + first.getHeader(Pages.NEXT_CURSOR)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse();
+
+        assertThat(JsonPath.<List<Integer>>read(second.getContentAsString(), "$[*].id"))
+                .containsExactly(feed.get(1));
+        mockMvc.perform(get("/users/1001/feed?limit=0"))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -1,5 +1,6 @@
 package dev.bolohonov.filmorate.controllers;
 
+import com.jayway.jsonpath.JsonPath;
 import dev.bolohonov.filmorate.model.Film;
 import dev.bolohonov.filmorate.model.Mpa;
 import dev.bolohonov.filmorate.model.User;
@@ -12,18 +13,26 @@ import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabas
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.net.URI;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static java.net.URI.create;
 import static java.time.Duration.ofSeconds;
 import static java.time.LocalDate.of;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -69,4 +78,52 @@ class FilmControllerTest {
                 .andDo(print())
                 .andExpect(status().isOk());
     }
-}
\ No newline at end of file
+
+    @Test
+    void findAllStreamsJsonArrayOrNdjson() throws Exception {
+        int filmsCount = filmService.getFilms().size();
+
+        MvcResult json = mockMvc.perform(get(filmUrl).accept(APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(json))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(APPLICATION_JSON))
+                .andExpect(jsonPath("$.length()").value(filmsCount));
+
+        MvcResult ndjson = mockMvc.perform(get(filmUrl).accept("application/x-ndjson"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(ndjson))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString();
+        assertThat(body.split("\n")).hasSize(filmsCount).allMatch(line -> line.startsWith("{\"id\":"));
+    }
+
+    @Test
+    void findAllPagesByCursor() throws Exception {
+        List<Integer> expected = filmService.getFilms().stream()
+                .map(Film::getId)
+                .sorted()
+                .collect(Collectors.toList());
+        List<Integer> paged = new ArrayList<>();
+        String cursor = "";
+        while (cursor != null) {
+            MvcResult page = mockMvc.perform(get(filmUrl + "?limit=3&after=" + cursor).accept(APPLICATION_JSON))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+            MockHttpServletResponse response = mockMvc.perform(asyncDispatch(page))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse();
+            for (Object id : JsonPath.<List<Object>>read(response.getContentAsString(), "$[*].id")) {
+                paged.add((Integer) id);
+            }
+            cursor = response.getHeader("X-Next-Cursor");
+        }
+        assertThat(paged).isEqualTo(expected);
+
+        mockMvc.perform(get(filmUrl + "?after=broken"))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,72 @@
+package dev.bolohonov.filmorate.controllers;
+
+import dev.bolohonov.filmorate.model.Film;
+import dev.bolohonov.filmorate.model.Mpa;
+import dev.bolohonov.filmorate.model.User;
+import dev.bolohonov.filmorate.service.FilmService;
+import dev.bolohonov.filmorate.service.UserService;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.util.Set;
+
+import static java.time.Duration.ofSeconds;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@AutoConfigureMockMvc
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class LikesControllerTest {
+
+    private final MockMvc mockMvc;
+    private final FilmService filmService;
+    private final UserService userService;
+
+    @Test
+    void importLikesReportsAcceptedDuplicateAndRejectedLines() throws Exception {
+        User user = userService.addUser(User.builder()
+                .birthday(LocalDate.of(2000, 1, 1))
+                .name("bulk")
+                .login("bulkLogin")
+                .email("bulk@ya.ru")
+                .build());
+        Film first = addFilm("Bulk1");
+        Film second = addFilm("Bulk2");
+        String body = String.format("{\"filmId\": %d, \"userId\": %d}%n", first.getId(), user.getId()) +
+                String.format("{\"filmId\": %d, \"userId\": %d}%n", second.getId(), user.getId()) +
+                String.format("{\"filmId\": %d, \"userId\": %d}%n", first.getId(), user.getId()) +
+                String.format("{\"filmId\": %d, \"userId\": %d}%n", 999999, user.getId()) +
+                "not json\n";
+
+        mockMvc.perform(post("/likes/bulk?events=false")
+                        .contentType("application/x-ndjson")
+                        .content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted").value(2))
+                .andExpect(jsonPath("$.duplicates").value(1))
+                .andExpect(jsonPath("$.rejected").value(2));
+
+        assertThat(filmService.getFilmById(first.getId()).orElseThrow().getLikes()).isEqualTo(Set.of(user.getId()));
+        assertThat(filmService.getFilmById(second.getId()).orElseThrow().getLikes()).isEqualTo(Set.of(user.getId()));
+    }
+
+    private Film addFilm(String name) {
+        return filmService.addFilm(Film.builder()
+                .name(name)
+                .description("Descr")
+                .releaseDate(LocalDate.of(2020, 1, 1))
+                .duration(ofSeconds(1500))
+                .mpa(new Mpa(1, "G"))
+                .build());
+    }
+}
@@ -0,0 +1,44 @@
+package dev.bolohonov.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CoLikeMatrixTest {
+
+    @Test
+    void rowKeepsStrongestNeighboursWithinCapacity() {
+        LikesMatrix likesMatrix = new LikesMatrix(null);
+        CoLikeMatrix coLikeMatrix = new CoLikeMatrix(likesMatrix, 2);
+        like(likesMatrix, coLikeMatrix, 1, 1);
+        like(likesMatrix, coLikeMatrix, 2, 1);
+        like(likesMatrix, coLikeMatrix, 1, 2);
+        like(likesMatrix, coLikeMatrix, 2, 2);
+        like(likesMatrix, coLikeMatrix, 3, 2);
+        like(likesMatrix, coLikeMatrix, 1, 3);
+        like(likesMatrix, coLikeMatrix, 4, 3);
+
+        assertThat(coLikeMatrix.getSimilar(1, 10)).hasSize(2).startsWith(2);
+    }
+
+    @Test
+    void recommendSkipsSeenFilms() {
+        LikesMatrix likesMatrix = new LikesMatrix(null);
+        CoLikeMatrix coLikeMatrix = new CoLikeMatrix(likesMatrix, 10);
+        like(likesMatrix, coLikeMatrix, 1, 1);
+        like(likesMatrix, coLikeMatrix, 2, 1);
+        like(likesMatrix, coLikeMatrix, 3, 1);
+        like(likesMatrix, coLikeMatrix, 1, 2);
+        like(likesMatrix, coLikeMatrix, 3, 2);
+
+        assertThat(coLikeMatrix.recommend(new int[]{1, 2}, 10)).containsExactly(3);
+        coLikeMatrix.removeFilm(3);
+        assertThat(coLikeMatrix.recommend(new int[]{1, 2}, 10)).isEmpty();
+    }
+
+    private static void like(LikesMatrix likesMatrix, CoLikeMatrix coLikeMatrix, int filmId, int userId) {
+        int[] otherFilms = likesMatrix.getFilms(userId);
+        likesMatrix.like(filmId, userId);
+        coLikeMatrix.like(filmId, otherFilms);
+    }
+}
@@ -11,6 +11,9 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -28,6 +31,19 @@ public class EventDbStorageTest {
         assertThat(events).hasSize(3);
     }
 
+    @Test
+    void getFeedPageTest() {
+        List<Integer> feed = eventDbStorage.getFeedForUser(1001).stream()
+                .map(Event::getId)
+                .sorted(Comparator.reverseOrder())
+                .collect(Collectors.toList());
+
+        List<Event> firstPage = eventDbStorage.getFeedPage(1001, Integer.MAX_VALUE, 2);
+        assertThat(firstPage).extracting(Event::getId).containsExactlyElementsOf(feed.subList(0, 2));
+        List<Event> secondPage = eventDbStorage.getFeedPage(1001, firstPage.get(1).getId(), 2);
+        assertThat(secondPage).extracting(Event::getId).containsExactlyElementsOf(feed.subList(2, feed.size()));
+    }
+
     @Test
     void addEventTest() {
         eventDbStorage.addEvent(1002, 1005, EventType.LIKE, OperationType.ADD);
@@ -0,0 +1,35 @@
+package dev.bolohonov.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FactorizationRecommenderTest {
+
+    @Test
+    void recommendsUnseenFilmsOfOwnCluster() {
+        LikesMatrix likesMatrix = new LikesMatrix(null);
+        for (int userId = 1; userId <= 60; userId++) {
+            int firstFilm = userId % 2 == 0 ? 1 : 101;
+            for (int filmId = firstFilm; filmId < firstFilm + 10; filmId++) {
+                if (userId > 2 || filmId % 10 != 0) {
+                    likesMatrix.like(filmId, userId);
+                }
+            }
+        }
+        FactorizationRecommender recommender =
+                new FactorizationRecommender(likesMatrix, true, 8, 10, 0.1, 20, 1000);
+        assertThat(recommender.recommend(2, 1)).isEmpty();
+
+        recommender.train();
+
+        List<Integer> even = recommender.recommend(2, 1);
+        List<Integer> odd = recommender.recommend(1, 1);
+        assertThat(even).containsExactly(10);
+        assertThat(odd).containsExactly(110);
+        assertThat(recommender.recommend(1000, 1)).isEmpty();
+        recommender.shutdown();
+    }
+}
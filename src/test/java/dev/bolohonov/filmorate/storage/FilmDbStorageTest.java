@@ -1,12 +1,15 @@
 package dev.bolohonov.filmorate.storage;
 
+import dev.bolohonov.filmorate.enums.SuggestionType;
 import dev.bolohonov.filmorate.exceptions.FilmNotFoundException;
 import dev.bolohonov.filmorate.model.Director;
 import dev.bolohonov.filmorate.model.Film;
 import dev.bolohonov.filmorate.model.Mpa;
+import dev.bolohonov.filmorate.model.Suggestion;
 import dev.bolohonov.filmorate.model.User;
 import dev.bolohonov.filmorate.service.DirectorService;
 import dev.bolohonov.filmorate.service.FilmService;
+import dev.bolohonov.filmorate.service.UserService;
 import lombok.RequiredArgsConstructor;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -22,6 +25,7 @@ import java.util.function.Supplier;
 import static java.time.Duration.ofSeconds;
 import static java.time.LocalDate.of;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 @SpringBootTest
@@ -32,6 +36,8 @@ class FilmDbStorageTest {
     private final FilmService filmService;
     private final DirectorService directorService;
     private final MpaDbStorage mpaDbStorage;
+    private final LikesDbStorage likesDbStorage;
+    private final UserService userService;
 
     private Supplier<User> userSupplier = () -> {
         return User.builder()
@@ -74,6 +80,18 @@ class FilmDbStorageTest {
         assertThat(films).contains(filmList.get(4));
     }
 
+    @Test
+    void testGetFilmsHydratesMpaDirectorAndLikes() {
+        Film film = filmDbStorage.getFilms().stream()
+                .filter(f -> f.getId() == 1006)
+                .findFirst()
+                .orElseThrow();
+        assertThat(film.getMpa()).isEqualTo(new Mpa(3, "PG_13"));
+        assertThat(film.getDirector()).hasFieldOrPropertyWithValue("name", "fil");
+        assertThat(filmDbStorage.getFilmById(1005).get().getLikes())
+                .containsExactlyInAnyOrder(1002, 1003, 1004, 1005);
+    }
+
     @Test
     void testAddFilm() {
         Film newFilm = Film.builder()
@@ -199,4 +217,85 @@ class FilmDbStorageTest {
         Assertions.assertEquals(5, list.size());
         assertThat(list.get(0)).hasFieldOrPropertyWithValue("name","FilmforSearchTest0");
     }
-}
\ No newline at end of file
+
+    @Test
+    void testSearchFollowsDirectorRenameAndLikeWildcards() {
+        Director director = directorService.createDirector(Director.builder().name("Kurosawa").build());
+        Film film = filmService.addFilm(Film.builder()
+                .name("Rashomon")
+                .description("Descr")
+                .releaseDate(of(1950, 8, 25))
+                .duration(ofSeconds(5280))
+                .mpa(new Mpa(1, "G"))
+                .director(director)
+                .likes(new HashSet<>())
+                .build());
+
+        assertThat(filmDbStorage.search("kuros", "director")).extracting(Film::getId).containsExactly(film.getId());
+        assertThat(filmDbStorage.search("ras_om", "title")).extracting(Film::getId).containsExactly(film.getId());
+        assertThat(filmDbStorage.search("rash%mon", "title")).extracting(Film::getId).containsExactly(film.getId());
+
+        directorService.updateDirector(director.getId(), Director.builder().name("Ozu").build());
+        assertThat(filmDbStorage.search("kuros", "director")).isEmpty();
+        assertThat(filmDbStorage.search("ozu", "director")).extracting(Film::getId).containsExactly(film.getId());
+    }
+
+    @Test
+    void testSuggestByWordPrefixWeightedByLikes() {
+        Director director = directorService.createDirector(Director.builder().name("Zyvagin").build());
+        Film unpopular = filmService.addFilm(Film.builder()
+                .name("Zyzzyva Returns")
+                .description("Descr")
+                .releaseDate(of(2001, 1, 1))
+                .duration(ofSeconds(1200))
+                .mpa(new Mpa(1, "G"))
+                .director(director)
+                .likes(new HashSet<>())
+                .build());
+        Film popular = filmService.addFilm(Film.builder()
+                .name("The Zyzzyva")
+                .description("Descr")
+                .releaseDate(of(2001, 1, 1))
+                .duration(ofSeconds(1200))
+                .mpa(new Mpa(1, "G"))
+                .director(director)
+                .likes(new HashSet<>())
+                .build());
+        likesDbStorage.addLike(popular.getId(), 1001);
+        likesDbStorage.addLike(popular.getId(), 1002);
+        likesDbStorage.addLike(unpopular.getId(), 1001);
+
+        assertThat(filmDbStorage.suggest("zyz", 10)).extracting(Suggestion::getId)
+                .containsExactly(popular.getId(), unpopular.getId());
+        assertThat(filmDbStorage.suggest("ZY", 1)).extracting(Suggestion::getType, Suggestion::getName)
+                .containsExactly(tuple(SuggestionType.DIRECTOR, "Zyvagin"));
+    }
+
+    @Test
+    void testGetCommonFilmsRankedByLikes() {
+        User first = userService.addUser(User.builder().name("Common1").login("common1").email("common1@mail.com")
+                .birthday(of(1990, 1, 1)).build());
+        User second = userService.addUser(User.builder().name("Common2").login("common2").email("common2@mail.com")
+                .birthday(of(1990, 1, 1)).build());
+        User third = userService.addUser(User.builder().name("Common3").login("common3").email("common3@mail.com")
+                .birthday(of(1990, 1, 1)).build());
+        Film lessLiked = filmService.addFilm(filmSupplier.get());
+        Film mostLiked = filmService.addFilm(filmSupplier.get());
+        Film onlyFirst = filmService.addFilm(filmSupplier.get());
+        likesDbStorage.addLike(lessLiked.getId(), first.getId());
+        likesDbStorage.addLike(lessLiked.getId(), second.getId());
+        likesDbStorage.addLike(mostLiked.getId(), first.getId());
+        likesDbStorage.addLike(mostLiked.getId(), second.getId());
+        likesDbStorage.addLike(mostLiked.getId(), third.getId());
+        likesDbStorage.addLike(onlyFirst.getId(), first.getId());
+
+        assertThat(filmDbStorage.getCommonFilmsBetweenTwoUsers(first.getId(), second.getId()))
+                .extracting(Film::getId)
+                .containsExactly(mostLiked.getId(), lessLiked.getId());
+
+        likesDbStorage.removeLike(mostLiked.getId(), second.getId());
+        assertThat(filmDbStorage.getCommonFilmsBetweenTwoUsers(first.getId(), second.getId()))
+                .extracting(Film::getId)
+                .containsExactly(lessLiked.getId());
+    }
+}
@@ -0,0 +1,62 @@
+package dev.bolohonov.filmorate.storage;
+
+import dev.bolohonov.filmorate.model.Suggestion;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FilmSearchIndexTest {
+
+    @Test
+    void directorLikesFollowConcurrentLikesAndDirectorChanges() throws Exception {
+        PopularityLeaderboard leaderboard = new PopularityLeaderboard(null);
+        FilmSearchIndex index = new FilmSearchIndex(null, leaderboard);
+        index.putDirector(1, "Kubrick");
+        for (int filmId = 10; filmId < 14; filmId++) {
+            leaderboard.addFilm(filmId, 1960);
+            index.putFilm(filmId, "Spartacus " + filmId, filmId < 13 ? 1 : null);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int task = 0; task < 8; task++) {
+                int filmId = 10 + task % 4;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 500; i++) {
+                        leaderboard.like(filmId);
+                        index.suggest("spar", 5);
+                        if (i % 5 == 0) {
+                            leaderboard.unlike(filmId);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        int directorLikes = leaderboard.getLikesCount(10) + leaderboard.getLikesCount(11)
+                + leaderboard.getLikesCount(12);
+        assertThat(directorLikes).isEqualTo(3 * 2 * 400);
+        assertThat(index.suggest("kub", 1)).extracting(Suggestion::getLikes).containsExactly(directorLikes);
+
+        index.putFilm(12, "Spartacus 12", null);
+        assertThat(index.suggest("kub", 1)).extracting(Suggestion::getLikes)
+                .containsExactly(directorLikes - leaderboard.getLikesCount(12));
+        leaderboard.like(13);
+        assertThat(index.suggest("spar", 1)).extracting(Suggestion::getId).containsExactly(13);
+        index.removeFilm(10);
+        assertThat(index.suggest("kub", 1)).extracting(Suggestion::getLikes)
+                .containsExactly(leaderboard.getLikesCount(11));
+    }
+}
@@ -0,0 +1,133 @@
+package dev.bolohonov.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FriendGraphTest {
+
+    @Test
+    void intersectMatchesNaiveIntersectionOnSkewedArrays() {
+        Random random = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            int[] small = sortedSample(random, random.nextInt(20), 5000);
+            int[] large = sortedSample(random, random.nextInt(3000), 5000);
+            int[] expected = Arrays.stream(small).filter(id -> Arrays.binarySearch(large, id) >= 0).toArray();
+
+            assertThat(FriendGraph.intersect(small, large)).containsExactly(expected);
+            assertThat(FriendGraph.intersect(large, small)).containsExactly(expected);
+        }
+    }
+
+    @Test
+    void commonFriendsFollowWrites() {
+        FriendGraph graph = new FriendGraph(null, 100_000, 100);
+        graph.add(1, 3);
+        graph.add(1, 4);
+        graph.add(2, 4);
+        graph.add(2, 3);
+        graph.add(3, 1);
+
+        assertThat(graph.getCommonFriends(1, 2)).containsExactly(3, 4);
+        graph.remove(2, 3);
+        assertThat(graph.getCommonFriends(1, 2)).containsExactly(4);
+        graph.removeUser(4);
+        assertThat(graph.getCommonFriends(1, 2)).isEmpty();
+        assertThat(graph.getFriends(1)).containsExactly(3);
+    }
+
+    @Test
+    void suggestionsRankByMutualFriendsAndFollowChanges() {
+        FriendGraph graph = new FriendGraph(null, 100_000, 100);
+        graph.add(1, 2);
+        graph.add(1, 3);
+        graph.add(2, 4);
+        graph.add(2, 5);
+        graph.add(3, 5);
+        graph.add(3, 1);
+
+        assertThat(graph.getSuggestions(1, 10)).containsExactly(5, 4);
+        assertThat(graph.getSuggestions(1, 1)).containsExactly(5);
+
+        graph.add(3, 4);
+        graph.add(2, 6);
+        assertThat(graph.getSuggestions(1, 10)).containsExactly(4, 5, 6);
+
+        graph.add(1, 4);
+        assertThat(graph.getSuggestions(1, 10)).containsExactly(5, 6);
+        graph.removeUser(5);
+        assertThat(graph.getSuggestions(1, 10)).containsExactly(6);
+    }
+
+    @Test
+    void suggestionsStopExpandingAtBudget() {
+        FriendGraph graph = new FriendGraph(null, 2, 100);
+        graph.add(1, 2);
+        graph.add(1, 3);
+        graph.add(2, 4);
+        graph.add(2, 5);
+        graph.add(3, 6);
+
+        assertThat(graph.getSuggestions(1, 10)).containsExactly(4, 5);
+    }
+
+    @Test
+    void distanceFollowsFriendDirectionAndCap() {
+        FriendGraph graph = new FriendGraph(null, 100_000, 100);
+        for (int userId = 1; userId < 8; userId++) {
+            graph.add(userId, userId + 1);
+        }
+        graph.add(1, 10);
+        graph.add(10, 4);
+
+        assertThat(graph.getDistance(1, 1, 6)).isZero();
+        assertThat(graph.getDistance(1, 2, 6)).isEqualTo(1);
+        assertThat(graph.getDistance(1, 4, 6)).isEqualTo(2);
+        assertThat(graph.getDistance(1, 8, 6)).isEqualTo(6);
+        assertThat(graph.getDistance(1, 8, 5)).isEqualTo(-1);
+        assertThat(graph.getDistance(8, 1, 6)).isEqualTo(-1);
+    }
+
+    @Test
+    void distanceMatchesPlainBfsOnRandomGraph() {
+        Random random = new Random(7);
+        FriendGraph graph = new FriendGraph(null, 100_000, 100);
+        int users = 300;
+        for (int edge = 0; edge < 600; edge++) {
+            graph.add(random.nextInt(users), random.nextInt(users));
+        }
+        for (int query = 0; query < 200; query++) {
+            int from = random.nextInt(users);
+            int to = random.nextInt(users);
+            int expected = plainBfs(graph, from, to, 6);
+            assertThat(graph.getDistance(from, to, 6)).as("%d -> %d", from, to).isEqualTo(expected);
+        }
+    }
+
+    private static int plainBfs(FriendGraph graph, int from, int to, int maxDistance) {
+        Map<Integer, Integer> depth = new HashMap<>(Map.of(from, 0));
+        Deque<Integer> queue = new ArrayDeque<>(List.of(from));
+        while (!queue.isEmpty()) {
+            int userId = queue.poll();
+            if (userId == to) {
+                return depth.get(userId);
+            }
+            if (depth.get(userId) == maxDistance) {
+                continue;
+            }
+            for (int friendId : graph.getFriends(userId)) {
+                if (depth.putIfAbsent(friendId, depth.get(userId) + 1) == null) {
+                    queue.add(friendId);
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static int[] sortedSample(Random random, int size, int bound) {
+        return IntStream.generate(() -> random.nextInt(bound)).limit(size).distinct().sorted().toArray();
+    }
+}
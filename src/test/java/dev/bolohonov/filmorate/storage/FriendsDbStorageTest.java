@@ -6,8 +6,11 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -18,6 +21,7 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 class FriendsDbStorageTest {
     private final FriendsStorage friendsDbStorage;
     private final UserStorage userDbStorage;
+    private final JdbcTemplate jdbcTemplate;
 
     @Test
     void addToFriends() {
@@ -32,6 +36,22 @@ class FriendsDbStorageTest {
         assertThat(!friendsDbStorage.getUserFriends(1001).contains(userDbStorage.findUserById(1004)));
     }
 
+    @Test
+    void acceptAndRemoveTouchOnlyTheirPair() {
+        String otherRows = "select * from friends where not (first_user_id = 1002 and second_user_id = 1003) " +
+                "order by first_user_id, second_user_id";
+        List<Map<String, Object>> before = jdbcTemplate.queryForList(otherRows);
+
+        assertTrue(friendsDbStorage.addToFriends(1003, 1002));
+        assertThat(friendsDbStorage.getUserFriends(1003)).extracting(User::getId).contains(1002);
+        assertThat(jdbcTemplate.queryForList(otherRows)).isEqualTo(before);
+
+        friendsDbStorage.removeFriend(1003, 1002);
+        assertThat(friendsDbStorage.getUserFriends(1003)).extracting(User::getId).doesNotContain(1002);
+        assertThat(friendsDbStorage.getUserFriends(1002)).extracting(User::getId).contains(1003);
+        assertThat(jdbcTemplate.queryForList(otherRows)).isEqualTo(before);
+    }
+
     @Test
     void getUserFriends() {
         Collection<User> userFriends = friendsDbStorage.getUserFriends(1002);
@@ -59,4 +79,30 @@ class FriendsDbStorageTest {
                 userDbStorage.findUserById(1005).get()
         );
     }
-}
\ No newline at end of file
+
+    @Test
+    void getFriendSuggestions() {
+        assertThat(friendsDbStorage.getFriendSuggestions(1001, 10))
+                .extracting(User::getId)
+                .containsExactly(1004, 1005);
+        assertThat(friendsDbStorage.getFriendSuggestions(1001, 1))
+                .extracting(User::getId)
+                .containsExactly(1004);
+    }
+
+    @Test
+    void getDistance() {
+        assertThat(friendsDbStorage.getDistance(1001, 1005, 6)).contains(2);
+        assertThat(friendsDbStorage.getDistance(1001, 1005, 1)).isEmpty();
+    }
+
+    @Test
+    void getUserFriendsPage() {
+        assertThat(friendsDbStorage.getUserFriendsPage(1002, 0, 2))
+                .extracting(User::getId)
+                .containsExactly(1003, 1004);
+        assertThat(friendsDbStorage.getUserFriendsPage(1002, 1004, 2))
+                .extracting(User::getId)
+                .containsExactly(1005);
+    }
+}
@@ -0,0 +1,42 @@
+package dev.bolohonov.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class LikesCountReconcilerTest {
+    private final LikesCountReconciler likesCountReconciler;
+    private final LikesDbStorage likesDbStorage;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Test
+    void addAndRemoveLikeKeepLikesCount() {
+        int before = getLikesCount(1006);
+        likesDbStorage.addLike(1006, 1001);
+        likesDbStorage.addLike(1006, 1001);
+        assertEquals(before + 1, getLikesCount(1006));
+        likesDbStorage.removeLike(1006, 1001);
+        likesDbStorage.removeLike(1006, 1001);
+        assertEquals(before, getLikesCount(1006));
+    }
+
+    @Test
+    void reconcileRepairsDrift() {
+        jdbcTemplate.update("update film set likes_count = 100 where id = 1002");
+        likesCountReconciler.reconcile();
+        assertEquals(jdbcTemplate.queryForObject("select count(*) from likes where film_id = 1002", Integer.class),
+                getLikesCount(1002));
+    }
+
+    private int getLikesCount(int filmId) {
+        return jdbcTemplate.queryForObject("select likes_count from film where id = ?", Integer.class, filmId);
+    }
+}
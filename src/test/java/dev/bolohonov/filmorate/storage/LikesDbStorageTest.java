@@ -1,18 +1,33 @@
 package dev.bolohonov.filmorate.storage;
 
+import dev.bolohonov.filmorate.exceptions.FilmNotFoundException;
+import dev.bolohonov.filmorate.exceptions.UserNotFoundException;
+import dev.bolohonov.filmorate.model.Director;
 import dev.bolohonov.filmorate.model.Film;
+import dev.bolohonov.filmorate.model.Mpa;
+import dev.bolohonov.filmorate.model.User;
 import dev.bolohonov.filmorate.service.DirectorService;
 import lombok.RequiredArgsConstructor;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
 
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 
 @SpringBootTest
@@ -22,6 +37,10 @@ class LikesDbStorageTest {
     private final LikesDbStorage likesDbStorage;
     private final FilmDbStorage filmDbStorage;
     private final DirectorService directorService;
+    private final UserDbStorage userDbStorage;
+    private final JdbcTemplate jdbcTemplate;
+    private final LikesMatrix likesMatrix;
+    private final CoLikeMatrix coLikeMatrix;
 
     @Test
     void addLike() {
@@ -61,6 +80,14 @@ class LikesDbStorageTest {
         assertEquals(1007, list.get(0).getId());
     }
 
+    @Test
+    void getFilmsByLikesGenreHydratesMpaAndDirector() {
+        Film film = likesDbStorage.getFilmsByLikes(5, 2, 0).iterator().next();
+        assertEquals(3, film.getMpa().getId());
+        assertEquals("PG_13", film.getMpa().getName());
+        assertEquals(2, film.getDirector().getId());
+    }
+
     @Test
     void getFilmsByLikesYear() {
         List<Film> list = (List<Film>) likesDbStorage.getFilmsByLikes(5,0, 2004);
@@ -79,4 +106,164 @@ class LikesDbStorageTest {
         assertThat(likesDbStorage.getRecommendations(1001).contains(filmDbStorage.getFilmById(1005)));
     };
 
-}
\ No newline at end of file
+    @Test
+    void getRecommendationsFromBestNeighbourUnseenFilms() {
+        User user = addUser("recommend1");
+        User closest = addUser("recommend2");
+        User other = addUser("recommend3");
+        Film shared = addFilm("Shared");
+        Film alsoShared = addFilm("Also shared");
+        Film recommended = addFilm("Recommended");
+        Film otherUnseen = addFilm("Other unseen");
+        likesDbStorage.addLike(shared.getId(), user.getId());
+        likesDbStorage.addLike(alsoShared.getId(), user.getId());
+        likesDbStorage.addLike(shared.getId(), closest.getId());
+        likesDbStorage.addLike(alsoShared.getId(), closest.getId());
+        likesDbStorage.addLike(recommended.getId(), closest.getId());
+        likesDbStorage.addLike(shared.getId(), other.getId());
+        likesDbStorage.addLike(otherUnseen.getId(), other.getId());
+
+        assertThat(likesDbStorage.getRecommendations(user.getId()))
+                .extracting(Film::getId)
+                .containsExactly(recommended.getId());
+
+        likesDbStorage.removeLike(recommended.getId(), closest.getId());
+        assertThat(likesDbStorage.getRecommendations(user.getId()))
+                .extracting(Film::getId)
+                .containsExactly(otherUnseen.getId());
+    }
+
+    @Test
+    void recommendPopularFilmsToUserWithoutLikes() {
+        User stranger = addUser("recommend4");
+
+        assertThat(likesDbStorage.getRecommendations(stranger.getId()))
+                .extracting(Film::getId)
+                .isNotEmpty()
+                .containsExactlyElementsOf(likesDbStorage.getFilmsByLikes(10, 0, 0).stream()
+                        .map(Film::getId)
+                        .collect(Collectors.toList()));
+    }
+
+    @Test
+    void getSimilarFilmsByCoLikes() {
+        User first = addUser("similar1");
+        User second = addUser("similar2");
+        User third = addUser("similar3");
+        Film film = addFilm("Similar base");
+        Film often = addFilm("Often together");
+        Film once = addFilm("Once together");
+        likesDbStorage.addLike(film.getId(), first.getId());
+        likesDbStorage.addLike(film.getId(), second.getId());
+        likesDbStorage.addLike(often.getId(), first.getId());
+        likesDbStorage.addLike(often.getId(), second.getId());
+        likesDbStorage.addLike(once.getId(), second.getId());
+        likesDbStorage.addLike(once.getId(), third.getId());
+
+        assertThat(likesDbStorage.getSimilarFilms(film.getId(), 10))
+                .extracting(Film::getId)
+                .hasSize(10)
+                .startsWith(often.getId(), once.getId());
+        assertThat(likesDbStorage.getSimilarFilms(film.getId(), 1))
+                .extracting(Film::getId)
+                .containsExactly(often.getId());
+
+        likesDbStorage.removeLike(film.getId(), second.getId());
+        assertThat(likesDbStorage.getSimilarFilms(film.getId(), 1))
+                .extracting(Film::getId)
+                .containsExactly(often.getId());
+        assertThat(likesDbStorage.getSimilarFilms(film.getId(), 10))
+                .extracting(Film::getId)
+                .doesNotContain(film.getId())
+                .doesNotHaveDuplicates();
+    }
+
+    @Test
+    void contentFallbackForFilmsAndUsersWithoutCoLikes() {
+        Director director = directorService.createDirector(Director.builder().name("Content director").build());
+        Film liked = addFilm("Content liked", director, 1931);
+        Film sameDirector = addFilm("Content same director", director, 1932);
+        addFilm("Content other", null, 1999);
+        User user = addUser("content1");
+        likesDbStorage.addLike(liked.getId(), user.getId());
+
+        assertThat(likesDbStorage.getSimilarFilms(liked.getId(), 1))
+                .extracting(Film::getId)
+                .containsExactly(sameDirector.getId());
+        assertThat(likesDbStorage.getRecommendations(user.getId()))
+                .extracting(Film::getId)
+                .startsWith(sameDirector.getId())
+                .doesNotContain(liked.getId());
+    }
+
+    @Test
+    void addLikeIsIdempotentAndReportsMissingFilmOrUser() {
+        User user = addUser("idempotent1");
+        Film film = addFilm("Idempotent");
+        likesDbStorage.addLike(film.getId(), user.getId());
+        likesDbStorage.addLike(film.getId(), user.getId());
+
+        assertThat(filmDbStorage.getFilmById(film.getId()).get().getLikes()).containsExactly(user.getId());
+        assertThat(jdbcTemplate.queryForObject("select likes_count from film where id = ?", Integer.class,
+                film.getId())).isEqualTo(1);
+        assertThrows(FilmNotFoundException.class, () -> likesDbStorage.addLike(999999, user.getId()));
+        assertThrows(UserNotFoundException.class, () -> likesDbStorage.addLike(film.getId(), 999999));
+        assertThrows(FilmNotFoundException.class, () -> likesDbStorage.removeLike(999999, user.getId()));
+    }
+
+    @Test
+    void concurrentLikesOfOneUserCountEveryCoLikePairOnce() throws Exception {
+        List<Film> films = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            films.add(addFilm("Concurrent " + i));
+        }
+        List<User> users = List.of(addUser("concurrent1"), addUser("concurrent2"), addUser("concurrent3"));
+        ExecutorService executor = Executors.newFixedThreadPool(films.size());
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (User user : users) {
+                for (Film film : films) {
+                    futures.add(executor.submit(() -> likesDbStorage.addLike(film.getId(), user.getId())));
+                }
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        CoLikeMatrix expected = new CoLikeMatrix(likesMatrix, 100);
+        expected.rebuild();
+        for (Film film : films) {
+            assertThat(coLikeMatrix.getSimilar(film.getId(), 100))
+                    .as("film %d", film.getId())
+                    .isEqualTo(expected.getSimilar(film.getId(), 100));
+        }
+    }
+
+    private User addUser(String login) {
+        return userDbStorage.addUser(User.builder()
+                .name(login)
+                .login(login)
+                .email(login + "@mail.com")
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build());
+    }
+
+    private Film addFilm(String name) {
+        return addFilm(name, null, 1960);
+    }
+
+    private Film addFilm(String name, Director director, int year) {
+        return filmDbStorage.addFilm(Film.builder()
+                .name(name)
+                .description("Descr")
+                .releaseDate(LocalDate.of(year, 1, 1))
+                .director(director)
+                .duration(Duration.ofSeconds(1200))
+                .mpa(new Mpa(1, "G"))
+                .likes(new HashSet<>())
+                .build());
+    }
+}
@@ -0,0 +1,79 @@
+package dev.bolohonov.filmorate.storage;
+
+import dev.bolohonov.filmorate.exceptions.FilmNotFoundException;
+import dev.bolohonov.filmorate.model.Film;
+import dev.bolohonov.filmorate.model.Mpa;
+import dev.bolohonov.filmorate.model.User;
+import dev.bolohonov.filmorate.service.FilmService;
+import dev.bolohonov.filmorate.service.UserService;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.HashSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest(properties = {
+        "filmorate.likes.write-behind.enabled=true",
+        "filmorate.likes.write-behind.flush-interval-ms=3600000"
+})
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class LikesWriteBufferTest {
+    private final FilmService filmService;
+    private final UserService userService;
+    private final LikesWriteBuffer likesWriteBuffer;
+    private final PopularityLeaderboard leaderboard;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Test
+    void likesAreVisibleInMemoryAtOnceAndWrittenOnFlush() {
+        Film film = filmService.addFilm(Film.builder()
+                .name("Premiere")
+                .description("Descr")
+                .releaseDate(LocalDate.of(2022, 1, 1))
+                .duration(Duration.ofSeconds(1200))
+                .mpa(new Mpa(1, "G"))
+                .likes(new HashSet<>())
+                .build());
+        User fan = addUser("fan1");
+        User undecided = addUser("fan2");
+
+        filmService.addLike(film.getId(), fan.getId());
+        filmService.addLike(film.getId(), fan.getId());
+        filmService.addLike(film.getId(), undecided.getId());
+        filmService.removeLike(film.getId(), undecided.getId());
+
+        assertThat(leaderboard.getLikesCount(film.getId())).isEqualTo(1);
+        assertThat(countLikes(film.getId())).isZero();
+
+        likesWriteBuffer.flushAndWait();
+
+        assertThat(countLikes(film.getId())).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("select likes_count from film where id = ?", Integer.class,
+                film.getId())).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("select count(*) from event where entity_id = ? and event_type = 'LIKE'",
+                Integer.class, film.getId())).isEqualTo(3);
+        assertThrows(FilmNotFoundException.class, () -> filmService.addLike(999999, fan.getId()));
+    }
+
+    private User addUser(String login) {
+        return userService.addUser(User.builder()
+                .name(login)
+                .login(login)
+                .email(login + "@mail.com")
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build());
+    }
+
+    private int countLikes(int filmId) {
+        return jdbcTemplate.queryForObject("select count(*) from likes where film_id = ?", Integer.class, filmId);
+    }
+}
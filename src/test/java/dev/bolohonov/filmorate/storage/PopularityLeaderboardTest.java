@@ -0,0 +1,73 @@
+package dev.bolohonov.filmorate.storage;
+
+import dev.bolohonov.filmorate.model.Film;
+import dev.bolohonov.filmorate.model.Mpa;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static java.time.Duration.ofSeconds;
+import static java.time.LocalDate.of;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class PopularityLeaderboardTest {
+    private final PopularityLeaderboard leaderboard;
+    private final FilmDbStorage filmDbStorage;
+    private final LikesDbStorage likesDbStorage;
+
+    @Test
+    void topFollowsLikesAndYearChanges() {
+        Film first = filmDbStorage.addFilm(film(1901));
+        Film second = filmDbStorage.addFilm(film(1901));
+        Film third = filmDbStorage.addFilm(film(1901));
+        likesDbStorage.addLike(third.getId(), 1001);
+        likesDbStorage.addLike(third.getId(), 1002);
+        likesDbStorage.addLike(second.getId(), 1001);
+
+        assertThat(leaderboard.getTop(3, 0, 1901)).containsExactly(third.getId(), second.getId(), first.getId());
+        assertThat(likesDbStorage.getFilmsByLikes(2, 0, 1901).stream().map(Film::getId).collect(Collectors.toList()))
+                .containsExactly(third.getId(), second.getId());
+
+        likesDbStorage.removeLike(third.getId(), 1001);
+        likesDbStorage.removeLike(third.getId(), 1002);
+        assertThat(leaderboard.getTop(3, 0, 1901)).containsExactly(second.getId(), first.getId(), third.getId());
+
+        second.setReleaseDate(of(1902, 1, 1));
+        filmDbStorage.updateFilm(second);
+        assertThat(leaderboard.getTop(3, 0, 1901)).containsExactly(first.getId(), third.getId());
+        assertThat(leaderboard.getTop(3, 0, 1902)).containsExactly(second.getId());
+
+        Film deleted = filmDbStorage.addFilm(film(1901));
+        likesDbStorage.addLike(deleted.getId(), 1001);
+        assertThat(leaderboard.getTop(1, 0, 1901)).containsExactly(deleted.getId());
+        filmDbStorage.deleteFilm(deleted.getId());
+        assertThat(leaderboard.getTop(3, 0, 1901)).containsExactly(first.getId(), third.getId());
+    }
+
+    @Test
+    void rebuildMatchesIncrementalState() {
+        List<Integer> before = leaderboard.getTop(100, 0, 0);
+        leaderboard.rebuild();
+        assertThat(leaderboard.getTop(100, 0, 0)).containsExactlyElementsOf(before);
+    }
+
+    private Film film(int year) {
+        return Film.builder()
+                .name("LeaderboardFilm")
+                .description("Descr")
+                .releaseDate(of(year, 1, 1))
+                .duration(ofSeconds(1500))
+                .mpa(new Mpa(1, "G"))
+                .likes(new HashSet<>())
+                .build();
+    }
+}
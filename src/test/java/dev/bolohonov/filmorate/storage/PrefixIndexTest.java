@@ -0,0 +1,66 @@
+package dev.bolohonov.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PrefixIndexTest {
+
+    @Test
+    void cachedTopsMatchFullScanAfterWeightAndTextChanges() {
+        Random random = new Random(11);
+        Map<Integer, Integer> weights = new HashMap<>();
+        Map<Integer, String> names = new HashMap<>();
+        PrefixIndex index = new PrefixIndex(id -> weights.getOrDefault(id, 0), names::get);
+        String[] words = {"ab", "abc", "abd", "b", "ba", "bab", "c"};
+        for (int step = 0; step < 2000; step++) {
+            int id = random.nextInt(50);
+            if (random.nextInt(4) == 0) {
+                String name = words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)];
+                names.put(id, name);
+                index.put(id, name);
+            } else if (random.nextInt(10) == 0) {
+                names.remove(id);
+                index.remove(id);
+            } else {
+                weights.merge(id, random.nextInt(5) - 2, Integer::sum);
+                index.touch(id);
+            }
+            for (String prefix : List.of("a", "ab", "b", "ba", "c", "x")) {
+                assertThat(index.top(prefix, 5)).as(prefix).isEqualTo(fullScan(names, weights, prefix, 5));
+            }
+        }
+    }
+
+    @Test
+    void longPrefixesAndLargeCountsFallBackToSubtree() {
+        Map<Integer, String> names = new HashMap<>();
+        PrefixIndex index = new PrefixIndex(id -> 0, names::get);
+        String longTitle = "x".repeat(PrefixIndex.MAX_TERM_LENGTH) + "yz";
+        names.put(1, longTitle);
+        names.put(2, "x".repeat(PrefixIndex.MAX_TERM_LENGTH) + "qq");
+        names.forEach(index::put);
+        for (int id = 10; id < 10 + PrefixIndex.TOP_K * 2; id++) {
+            names.put(id, "many " + id);
+            index.put(id, names.get(id));
+        }
+
+        assertThat(index.top(longTitle, 10)).containsExactly(1);
+        assertThat(index.top("many", PrefixIndex.TOP_K * 2)).hasSize(PrefixIndex.TOP_K * 2);
+    }
+
+    private static List<Integer> fullScan(Map<Integer, String> names, Map<Integer, Integer> weights,
+                                          String prefix, int count) {
+        return names.entrySet().stream()
+                .filter(e -> Arrays.stream(e.getValue().split(" ")).anyMatch(word -> word.startsWith(prefix)))
+                .map(Map.Entry::getKey)
+                .sorted(Comparator.comparingInt((Integer id) -> weights.getOrDefault(id, 0)).reversed()
+                        .thenComparing(names::get)
+                        .thenComparingInt(id -> id))
+                .limit(count)
+                .collect(Collectors.toList());
+    }
+}
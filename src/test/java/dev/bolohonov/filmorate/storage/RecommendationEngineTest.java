@@ -0,0 +1,81 @@
+package dev.bolohonov.filmorate.storage;
+
+import dev.bolohonov.filmorate.exceptions.RecommendationNotFoundException;
+import dev.bolohonov.filmorate.model.RecallReport;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RecommendationEngineTest {
+
+    @Test
+    void parallelScoringMatchesSequential() {
+        LikesMatrix likesMatrix = new LikesMatrix(null);
+        Random random = new Random(42);
+        for (int userId = 1; userId <= 2000; userId++) {
+            for (int i = 0; i < 15; i++) {
+                likesMatrix.like(random.nextInt(300) + 1, userId);
+            }
+        }
+        RecommendationEngine sequential = new RecommendationEngine(likesMatrix, exact(likesMatrix), 1, 16);
+        RecommendationEngine parallel = new RecommendationEngine(likesMatrix, exact(likesMatrix), 4, 16);
+        try {
+            for (int userId = 1; userId <= 2000; userId += 37) {
+                assertThat(parallel.recommend(userId)).containsExactly(sequential.recommend(userId));
+            }
+        } finally {
+            parallel.shutdown();
+        }
+    }
+
+    @Test
+    void recommendFindsNeighbourBeyondFirstTopK() {
+        LikesMatrix likesMatrix = new LikesMatrix(null);
+        likesMatrix.like(1, 1);
+        for (int userId = 2; userId <= 200; userId++) {
+            likesMatrix.like(1, userId);
+        }
+        likesMatrix.like(2, 200);
+        RecommendationEngine engine = new RecommendationEngine(likesMatrix, exact(likesMatrix), 2, 8);
+        try {
+            assertThat(engine.recommend(1)).containsExactly(2);
+            assertThrows(RecommendationNotFoundException.class, () -> engine.recommend(500));
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    @Test
+    void approximateModeFindsUsersWithIdenticalTasteAndReportsRecall() {
+        LikesMatrix likesMatrix = new LikesMatrix(null);
+        MinHashIndex minHashIndex = new MinHashIndex(likesMatrix, true, 16, 4);
+        for (int userId = 1; userId <= 400; userId++) {
+            int cluster = userId % 20;
+            for (int filmId = cluster * 10 + 1; filmId <= cluster * 10 + 5; filmId++) {
+                like(likesMatrix, minHashIndex, filmId, userId);
+            }
+        }
+        like(likesMatrix, minHashIndex, 1000, 20);
+        RecommendationEngine engine = new RecommendationEngine(likesMatrix, minHashIndex, 1, 16);
+
+        assertThat(minHashIndex.candidates(40).contains(20)).isTrue();
+        assertThat(engine.recommend(40)).containsExactly(1000);
+
+        RecallReport report = engine.measureRecall(50);
+        assertThat(report.getUsers()).isEqualTo(50);
+        assertThat(report.getNeighbourRecall()).isEqualTo(1.0);
+        assertThat(report.getRecommendationMatch()).isEqualTo(1.0);
+    }
+
+    private static MinHashIndex exact(LikesMatrix likesMatrix) {
+        return new MinHashIndex(likesMatrix, false, 1, 1);
+    }
+
+    private static void like(LikesMatrix likesMatrix, MinHashIndex minHashIndex, int filmId, int userId) {
+        likesMatrix.like(filmId, userId);
+        minHashIndex.like(userId, filmId);
+    }
+}
@@ -0,0 +1,87 @@
+package dev.bolohonov.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class SchemaIndexesTest {
+    /**
+     * Обращение к таблице без условия в плане H2: полный просмотр таблицы или индекса.
+     */
+    private static final Pattern FULL_SCAN = Pattern.compile("/\\* PUBLIC\\.\\w+(\\.tableScan)? \\*/");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SchemaMigrator schemaMigrator;
+
+    @Test
+    void migrationsAreAppliedOnce() throws Exception {
+        assertThat(jdbcTemplate.queryForList("select version from schema_version order by version", Integer.class))
+                .startsWith(1, 2, 3, 4, 5, 6);
+        assertThat(schemaMigrator.migrate()).isZero();
+    }
+
+    @Test
+    void hotQueriesUseIndexes() {
+        List<String> scans = new ArrayList<>();
+        check(scans, LikesDbStorage.class, "SQL_SELECT_FILMS_BY_LIKES_BY_GENRE_AND_YEAR", 1, 2020, 10);
+        check(scans, LikesDbStorage.class, "SQL_SELECT_FILMS_BY_LIKES_BY_GENRE", 1, 10);
+        check(scans, LikesDbStorage.class, "SQL_SELECT_FILMS_BY_LIKES_BY_YEAR", 2020, 10);
+        check(scans, LikesDbStorage.class, "SQL_SELECT_FILMS_BY_LIKES", 10);
+        check(scans, LikesDbStorage.class, "SQL_DELETE", 1001, 1001);
+        check(scans, LikesDbStorage.class, "SQL_FILM_EXISTS", 1001);
+        check(scans, LikesDbStorage.class, "SQL_USER_EXISTS", 1001);
+        check(scans, UserDbStorage.class, "SQL_SELECT_LIKED_FILMS", 1001);
+        check(scans, UserDbStorage.class, "SQL_DECREMENT_LIKES_COUNT_OF_LIKED_FILMS", 1001);
+        check(scans, UserDbStorage.class, "SQL_SELECT_FIND_USER", 1001);
+        check(scans, FilmDbStorage.class, "SQL_SELECT_WITH_ID", 1001);
+        check(scans, FilmDbStorage.class, "SQL_FIND_ALL_FILMS_BY_DIRECTOR_ID", 1);
+        check(scans, FilmFeatureIndex.class, "SQL_SELECT_GENRES_OF_FILM", 1001);
+        check(scans, FriendsDbStorage.class, "SQL_ACCEPT", true, false, 1001, 1002);
+        check(scans, FriendsDbStorage.class, "SQL_RETRACT", false, true, 1001, 1002);
+        check(scans, FriendsDbStorage.class, "SQL_DELETE_RETRACTED", 1001, 1002);
+        check(scans, FriendsDbStorage.class, "SQL_SELECT_USERS_BY_IDS", 1001, 1002);
+        check(scans, EventDbStorage.class, "SQL_SELECT_EVENTS_FROM_FRIENDS", 1001, 1001);
+        check(scans, EventDbStorage.class, "SQL_SELECT_FRIEND_EVENTS_BETWEEN", 1001, 100, 0, 10);
+        check(scans, EventDbStorage.class, "SQL_INSERT_EVENT_IF_ABSENT",
+                null, 1001, "LIKE", "ADD", 1001, 1001, "LIKE", "ADD", 1001);
+        check(scans, ReviewDBStorage.class, "SQL_FOR_GET_ALL_REVIEWS_BY_FILM_ID", 1001, 10);
+        check(scans, ReviewDBStorage.class, "SQL_FOR_GET_REVIEW_USEFUL_BY_ID", 1);
+        check(scans, ReviewDBStorage.class, "SQL_FOR_GET_REVIEWS_PAGE_BY_FILM_ID", 1001, 0, 10);
+        check(scans, FilmDbStorage.class, "SQL_SELECT_PAGE", 1001, 10);
+        check(scans, UserDbStorage.class, "SQL_SELECT_PAGE", 1001, 10);
+        check(scans, DirectorDbStorage.class, "SQL_SELECT_WITH_ID", 1);
+        check(scans, FilmHydrator.class, "SQL_SELECT_FILMS_BY_IDS", 1001, 1002);
+        check(scans, FilmHydrator.class, "SQL_SELECT_LIKES_BY_FILM_IDS", 1001, 1002);
+        assertThat(scans).isEmpty();
+    }
+
+    /**
+     * Добавляет в scans план запроса из константы класса, если в нем есть полный просмотр;
+     * просмотр отсортированного индекса под LIMIT допускается.
+     * Именованный список id {@code (:ids)} подставляется как список из переданных параметров.
+     */
+    private void check(List<String> scans, Class<?> owner, String field, Object... args) {
+        String sql = ((String) ReflectionTestUtils.getField(owner, field)).replace(";", "");
+        if (sql.contains(":ids")) {
+            sql = sql.replace(":ids", String.join(", ", Collections.nCopies(args.length, "?")));
+        }
+        String plan = jdbcTemplate.queryForObject("explain " + sql, String.class, args);
+        if (FULL_SCAN.matcher(plan).find() && !plan.contains("/* index sorted */")) {
+            scans.add(owner.getSimpleName() + "." + field + ":\n" + plan);
+        }
+    }
+}